@@ -0,0 +1,62 @@
+package com.transferwise.common.gracefulshutdown.benchmarks;
+
+import com.transferwise.common.gracefulshutdown.config.RequestCountStrategyProperties;
+import com.transferwise.common.gracefulshutdown.strategies.servletrequestcount.BaseRequestCountGracefulShutdownStrategy;
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Common setup of the request count filter benchmarks.
+ *
+ * <p>One strategy is shared by all benchmark threads, as in a real application, so the counting contention is part of the measurement.
+ */
+@State(Scope.Benchmark)
+public abstract class BaseRequestCountFilterBenchmark {
+
+  static final String COUNTED_URI = "/v1/transfers";
+  static final String IGNORED_URI = "/actuator/health";
+
+  /**
+   * `accepting` - normal operation, `limited` - normal operation with the adaptive concurrency limit enabled, which never rejects here,
+   * `rejecting` - client reaction time has passed and every request is rejected.
+   */
+  @Param({"accepting", "limited", "rejecting"})
+  public String phase;
+
+  protected <T extends BaseRequestCountGracefulShutdownStrategy> T prepare(T strategy) throws ReflectiveOperationException {
+    Field propertiesField = BaseRequestCountGracefulShutdownStrategy.class.getDeclaredField("requestCountStrategyProperties");
+    propertiesField.setAccessible(true);
+    var properties = new RequestCountStrategyProperties();
+    if ("limited".equals(phase)) {
+      properties.getConcurrencyLimit().setEnabled(true);
+      properties.getConcurrencyLimit().setMinLimit(Integer.MAX_VALUE);
+      properties.getConcurrencyLimit().setInitialLimit(Integer.MAX_VALUE);
+      properties.getConcurrencyLimit().setMaxLimit(Integer.MAX_VALUE);
+    }
+    propertiesField.set(strategy, properties);
+    strategy.afterPropertiesSet();
+
+    if ("rejecting".equals(phase)) {
+      strategy.prepareForShutdown();
+      strategy.clientReactionTimePassed();
+    }
+    return strategy;
+  }
+
+  static String getRequestUri(String uri) {
+    return "ignored".equals(uri) ? IGNORED_URI : COUNTED_URI;
+  }
+
+  /**
+   * Only satisfies non-null checks of servlet API wrapper classes, the benchmarks override every method they need.
+   */
+  @SuppressWarnings("unchecked")
+  static <T> T unsupported(Class<T> type) {
+    return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+      throw new UnsupportedOperationException(method.getName());
+    });
+  }
+}
@@ -0,0 +1,178 @@
+package com.transferwise.common.gracefulshutdown.benchmarks;
+
+import com.transferwise.common.gracefulshutdown.strategies.servletrequestcount.LegacyRequestCountGracefulShutdownStrategy;
+import com.transferwise.common.gracefulshutdown.strategies.servletrequestcount.servletwrappers.JavaxHttpServletRequestWrapper;
+import com.transferwise.common.gracefulshutdown.strategies.servletrequestcount.servletwrappers.JavaxHttpServletResponseWrapper;
+import java.util.concurrent.Callable;
+import javax.servlet.DispatcherType;
+import javax.servlet.FilterChain;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Request count filter on the javax servlet API path, used with Spring Boot 2.
+ */
+@Threads(1)
+public class JavaxRequestCountFilterBenchmark extends BaseRequestCountFilterBenchmark {
+
+  private LegacyRequestCountGracefulShutdownStrategy strategy;
+
+  @Setup
+  public void setup() throws ReflectiveOperationException {
+    strategy = prepare(new LegacyRequestCountGracefulShutdownStrategy());
+  }
+
+  @Benchmark
+  public void doFilter(Exchange exchange) throws Exception {
+    strategy.doFilter(exchange.request, exchange.response, exchange.chain);
+  }
+
+  @Benchmark
+  public void doFilterInternal(Exchange exchange) throws Exception {
+    strategy.doFilterInternal(exchange.requestWrapper, exchange.responseWrapper, exchange.chainCaller);
+  }
+
+  /**
+   * Request and response of a single benchmark thread.
+   */
+  @State(Scope.Thread)
+  public static class Exchange {
+
+    @Param({"counted", "ignored"})
+    public String uri;
+
+    StubRequest request;
+    StubResponse response;
+    FilterChain chain;
+    JavaxHttpServletRequestWrapper requestWrapper;
+    JavaxHttpServletResponseWrapper responseWrapper;
+    Callable<Void> chainCaller;
+
+    @Setup
+    public void setup() {
+      request = new StubRequest(getRequestUri(uri));
+      response = new StubResponse();
+      chain = (req, res) -> {
+      };
+      requestWrapper = new JavaxHttpServletRequestWrapper(request);
+      responseWrapper = new JavaxHttpServletResponseWrapper(response);
+      chainCaller = () -> null;
+    }
+  }
+
+  /**
+   * Allocation free request, keeping only the single attribute the filter uses.
+   */
+  static class StubRequest extends HttpServletRequestWrapper {
+
+    private final String requestUri;
+    private String attributeName;
+    private Object attributeValue;
+
+    StubRequest(String requestUri) {
+      super(unsupported(HttpServletRequest.class));
+      this.requestUri = requestUri;
+    }
+
+    @Override
+    public String getRequestURI() {
+      return requestUri;
+    }
+
+    @Override
+    public String getMethod() {
+      return "GET";
+    }
+
+    @Override
+    public DispatcherType getDispatcherType() {
+      return DispatcherType.REQUEST;
+    }
+
+    @Override
+    public boolean isAsyncStarted() {
+      return false;
+    }
+
+    @Override
+    public String getProtocol() {
+      return "HTTP/1.1";
+    }
+
+    @Override
+    public String getRemoteAddr() {
+      return "127.0.0.1";
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+      return name.equals(attributeName) ? attributeValue : null;
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+      attributeName = name;
+      attributeValue = value;
+    }
+
+    @Override
+    public void removeAttribute(String name) {
+      if (name.equals(attributeName)) {
+        attributeName = null;
+        attributeValue = null;
+      }
+    }
+  }
+
+  static class StubResponse extends HttpServletResponseWrapper {
+
+    StubResponse() {
+      super(unsupported(HttpServletResponse.class));
+    }
+
+    @Override
+    public void sendError(int sc) {
+    }
+
+    @Override
+    public void sendError(int sc, String msg) {
+    }
+
+    @Override
+    public void setStatus(int sc) {
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+    }
+
+    @Override
+    public boolean isCommitted() {
+      return false;
+    }
+  }
+
+  @Threads(4)
+  public static class Threads4 extends JavaxRequestCountFilterBenchmark {
+  }
+
+  @Threads(16)
+  public static class Threads16 extends JavaxRequestCountFilterBenchmark {
+  }
+
+  @Threads(64)
+  public static class Threads64 extends JavaxRequestCountFilterBenchmark {
+  }
+}
@@ -5,16 +5,28 @@ import com.transferwise.common.gracefulshutdown.config.RequestCountStrategyPrope
 import com.transferwise.common.gracefulshutdown.strategies.ExecutorServiceGracefulShutdownStrategy;
 import com.transferwise.common.gracefulshutdown.strategies.GracefulShutdownHealthStrategy;
 import com.transferwise.common.gracefulshutdown.strategies.KagkarlssonDbScheduledTaskShutdownStrategy;
+import com.transferwise.common.gracefulshutdown.strategies.ShutdownResourcesIndex;
 import com.transferwise.common.gracefulshutdown.strategies.TaskSchedulersGracefulShutdownStrategy;
+import com.transferwise.common.gracefulshutdown.strategies.servletrequestcount.BaseRequestCountGracefulShutdownStrategy;
 import com.transferwise.common.gracefulshutdown.strategies.servletrequestcount.LegacyRequestCountGracefulShutdownStrategy;
+import com.transferwise.common.gracefulshutdown.strategies.servletrequestcount.MicrometerRequestCountMeterBinder;
 import com.transferwise.common.gracefulshutdown.strategies.servletrequestcount.RequestCountGracefulShutdownStrategy;
+import com.transferwise.common.gracefulshutdown.strategies.webfluxrequestcount.WebFluxRequestCountFilter;
+import com.transferwise.common.gracefulshutdown.strategies.webfluxrequestcount.WebFluxRequestCountGracefulShutdownStrategy;
+import com.transferwise.common.gracefulshutdown.timeline.MicrometerShutdownTimelineListener;
+import com.transferwise.common.gracefulshutdown.timeline.ShutdownTimelineRecorder;
+import java.util.EnumSet;
+import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
 import org.springframework.boot.autoconfigure.AutoConfigureOrder;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.ApplicationContext;
@@ -28,6 +40,9 @@ import org.springframework.scheduling.annotation.SchedulingConfigurer;
 @ConditionalOnProperty(value = "tw-graceful-shutdown.enable", matchIfMissing = true)
 @EnableConfigurationProperties({GracefulShutdownProperties.class})
 @AutoConfigureOrder(Ordered.LOWEST_PRECEDENCE)
+// `MeterRegistry` conditions of nested configurations only see the registries defined before us.
+@AutoConfigureAfter(name = {"org.springframework.boot.actuate.autoconfigure.metrics.MetricsAutoConfiguration",
+    "org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration"})
 public class GracefulShutdownAutoConfiguration {
 
   @Configuration
@@ -65,6 +80,7 @@ public class GracefulShutdownAutoConfiguration {
       var m = registrationBean.getClass().getMethod("setFilter", Class.forName("javax.servlet.Filter"));
       m.invoke(registrationBean, requestCountGracefulShutdownStrategy);
       registrationBean.setOrder(requestCountStrategyProperties.getFilterOrder());
+      setDispatcherTypes(registrationBean, "javax.servlet.DispatcherType");
       return registrationBean;
     }
 
@@ -92,6 +108,7 @@ public class GracefulShutdownAutoConfiguration {
       var m = registrationBean.getClass().getMethod("setFilter", Class.forName("jakarta.servlet.Filter"));
       m.invoke(registrationBean, requestCountGracefulShutdownStrategy);
       registrationBean.setOrder(requestCountStrategyProperties.getFilterOrder());
+      setDispatcherTypes(registrationBean, "jakarta.servlet.DispatcherType");
 
       return registrationBean;
     }
@@ -103,6 +120,40 @@ public class GracefulShutdownAutoConfiguration {
     }
   }
 
+  /**
+   * ASYNC and ERROR dispatches are filtered as well, so async requests are not counted twice, and are not rejected half way through.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static void setDispatcherTypes(FilterRegistrationBean registrationBean, String dispatcherTypeClassName) throws Exception {
+    Class dispatcherType = Class.forName(dispatcherTypeClassName);
+    var dispatcherTypes = EnumSet.of(Enum.valueOf(dispatcherType, "REQUEST"), Enum.valueOf(dispatcherType, "ASYNC"),
+        Enum.valueOf(dispatcherType, "ERROR"));
+    registrationBean.getClass().getMethod("setDispatcherTypes", EnumSet.class).invoke(registrationBean, dispatcherTypes);
+  }
+
+  @Configuration
+  @RequiredArgsConstructor
+  @EnableConfigurationProperties({RequestCountStrategyProperties.class})
+  @ConditionalOnClass(name = "org.springframework.web.server.WebFilter")
+  @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+  protected static class ReactiveConfiguration {
+
+    private final RequestCountStrategyProperties requestCountStrategyProperties;
+
+    @Bean
+    @ConditionalOnProperty(value = "tw-graceful-shutdown.request-count-strategy.enabled", matchIfMissing = true)
+    public WebFluxRequestCountFilter webFluxRequestCountGracefulShutdownStrategyFilter(
+        WebFluxRequestCountGracefulShutdownStrategy webFluxRequestCountGracefulShutdownStrategy) {
+      return new WebFluxRequestCountFilter(webFluxRequestCountGracefulShutdownStrategy, requestCountStrategyProperties.getFilterOrder());
+    }
+
+    @Bean
+    @ConditionalOnProperty(value = "tw-graceful-shutdown.request-count-strategy.enabled", matchIfMissing = true)
+    public WebFluxRequestCountGracefulShutdownStrategy webFluxRequestCountGracefulShutdownStrategy() {
+      return new WebFluxRequestCountGracefulShutdownStrategy();
+    }
+  }
+
   @Configuration
   @ConditionalOnClass(name = "com.github.kagkarlsson.scheduler.Scheduler")
   @ConditionalOnProperty(value = "tw-graceful-shutdown.kagkarlsson-db-scheduler.enabled", matchIfMissing = true)
@@ -123,8 +174,11 @@ public class GracefulShutdownAutoConfiguration {
     @Bean
     public TaskSchedulersGracefulShutdownStrategy taskSchedulersGracefulShutdownStrategy(
         @Autowired ApplicationContext applicationContext,
-        @Autowired GracefulShutdownProperties gracefulShutdownProperties) {
-      return new TaskSchedulersGracefulShutdownStrategy(applicationContext, gracefulShutdownProperties);
+        @Autowired GracefulShutdownProperties gracefulShutdownProperties,
+        ObjectProvider<ShutdownResourcesIndex> shutdownResourcesIndex) {
+      var strategy = new TaskSchedulersGracefulShutdownStrategy(applicationContext, gracefulShutdownProperties);
+      strategy.setResourcesIndex(shutdownResourcesIndex.getIfAvailable());
+      return strategy;
     }
 
     @Bean
@@ -143,12 +197,65 @@ public class GracefulShutdownAutoConfiguration {
     @Bean
     public ExecutorServiceGracefulShutdownStrategy executorServiceGracefulShutdownStrategy(
         @Autowired ApplicationContext applicationContext,
-        @Autowired GracefulShutdownProperties gracefulShutdownProperties
+        @Autowired GracefulShutdownProperties gracefulShutdownProperties,
+        ObjectProvider<ShutdownResourcesIndex> shutdownResourcesIndex
     ) {
-      return new ExecutorServiceGracefulShutdownStrategy(applicationContext, gracefulShutdownProperties);
+      var strategy = new ExecutorServiceGracefulShutdownStrategy(applicationContext, gracefulShutdownProperties);
+      strategy.setResourcesIndex(shutdownResourcesIndex.getIfAvailable());
+      return strategy;
+    }
+  }
+
+  @Configuration
+  @ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+  protected static class MicrometerConfiguration {
+
+    @Bean
+    @ConditionalOnBean(type = "io.micrometer.core.instrument.MeterRegistry")
+    @ConditionalOnMissingBean
+    public MicrometerShutdownTimelineListener micrometerShutdownTimelineListener(io.micrometer.core.instrument.MeterRegistry meterRegistry) {
+      return new MicrometerShutdownTimelineListener(meterRegistry);
+    }
+
+    @Bean
+    @ConditionalOnBean(type = "io.micrometer.core.instrument.MeterRegistry")
+    @ConditionalOnMissingBean
+    public MicrometerRequestCountMeterBinder micrometerRequestCountMeterBinder(
+        ObjectProvider<BaseRequestCountGracefulShutdownStrategy> requestCountStrategies) {
+      return new MicrometerRequestCountMeterBinder(requestCountStrategies.orderedStream().collect(Collectors.toList()));
+    }
+  }
+
+  @Configuration
+  @ConditionalOnClass(name = "org.springframework.boot.actuate.endpoint.annotation.Endpoint")
+  protected static class EndpointConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public GracefulShutdownEndpoint gracefulShutdownEndpoint(ShutdownTimelineRecorder shutdownTimelineRecorder,
+        ObjectProvider<BaseRequestCountGracefulShutdownStrategy> requestCountStrategies,
+        ObjectProvider<ShutdownResourcesIndex> shutdownResourcesIndex) {
+      return new GracefulShutdownEndpoint(shutdownTimelineRecorder, requestCountStrategies.orderedStream().collect(Collectors.toList()),
+          shutdownResourcesIndex.getIfAvailable());
     }
   }
 
+  /**
+   * Static, as a post processor has to be created before other beans, without initializing this configuration.
+   */
+  @Bean
+  @ConditionalOnMissingBean
+  @ConditionalOnProperty(value = "tw-graceful-shutdown.resource-shutdown.index", matchIfMissing = true)
+  public static ShutdownResourcesIndex shutdownResourcesIndex() {
+    return new ShutdownResourcesIndex();
+  }
+
+  @Bean
+  @ConditionalOnMissingBean
+  public ShutdownTimelineRecorder shutdownTimelineRecorder() {
+    return new ShutdownTimelineRecorder();
+  }
+
   @Bean
   @ConditionalOnMissingBean
   public GracefulShutdowner gracefulShutdowner() {
@@ -0,0 +1,61 @@
+package com.transferwise.common.gracefulshutdown;
+
+import com.transferwise.common.gracefulshutdown.strategies.ShutdownResourcesIndex;
+import com.transferwise.common.gracefulshutdown.strategies.servletrequestcount.BaseRequestCountGracefulShutdownStrategy;
+import com.transferwise.common.gracefulshutdown.timeline.ShutdownTimelineRecorder;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+/**
+ * Exposes the timeline of the current or the most recent shutdown, and the one of the previous process, if it was persisted.
+ *
+ * <p>In-flight requests are exposed as well, when the in-flight registry of request count strategies is enabled, and so are the resources
+ * recorded by the {@link ShutdownResourcesIndex}.
+ */
+@Endpoint(id = "gracefulshutdown")
+public class GracefulShutdownEndpoint {
+
+  private final ShutdownTimelineRecorder timelineRecorder;
+
+  private final List<BaseRequestCountGracefulShutdownStrategy> requestCountStrategies;
+
+  private final ShutdownResourcesIndex resourcesIndex;
+
+  public GracefulShutdownEndpoint(ShutdownTimelineRecorder timelineRecorder) {
+    this(timelineRecorder, List.of());
+  }
+
+  public GracefulShutdownEndpoint(ShutdownTimelineRecorder timelineRecorder, List<BaseRequestCountGracefulShutdownStrategy> requestCountStrategies) {
+    this(timelineRecorder, requestCountStrategies, null);
+  }
+
+  public GracefulShutdownEndpoint(ShutdownTimelineRecorder timelineRecorder, List<BaseRequestCountGracefulShutdownStrategy> requestCountStrategies,
+      ShutdownResourcesIndex resourcesIndex) {
+    this.timelineRecorder = timelineRecorder;
+    this.requestCountStrategies = requestCountStrategies;
+    this.resourcesIndex = resourcesIndex;
+  }
+
+  @ReadOperation
+  public Map<String, Object> timeline() {
+    var result = new LinkedHashMap<String, Object>();
+    result.put("current", timelineRecorder.getCurrentTimeline());
+    result.put("previous", timelineRecorder.getPreviousTimeline());
+    var inFlightRequests = requestCountStrategies.stream()
+        .map(BaseRequestCountGracefulShutdownStrategy::getInFlightRequestsReport)
+        .filter(Objects::nonNull)
+        .collect(Collectors.toList());
+    if (!inFlightRequests.isEmpty()) {
+      result.put("inFlightRequests", inFlightRequests);
+    }
+    if (resourcesIndex != null) {
+      result.put("resourcesIndex", resourcesIndex.describe());
+    }
+    return result;
+  }
+}
@@ -0,0 +1,46 @@
+package com.transferwise.common.gracefulshutdown;
+
+import com.transferwise.common.gracefulshutdown.strategies.ExecutorServiceGracefulShutdownStrategy;
+import com.transferwise.common.gracefulshutdown.strategies.TaskSchedulersGracefulShutdownStrategy;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * How an annotated Bean is shut down, on its class or on its `@Bean` method.
+ * <p>
+ * Affects: {@link ExecutorServiceGracefulShutdownStrategy} and {@link TaskSchedulersGracefulShutdownStrategy}
+ * </p>
+ * <p>
+ * Overridden by `tw-graceful-shutdown.resource-shutdown.policies` of the bean name.
+ * </p>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface GracefulShutdownPolicy {
+
+  /**
+   * Resources of a strategy are shut down tier by tier, lowest first, e.g. producers before their consumers. Resources of the same tier
+   * are shut down in parallel.
+   */
+  int tier() default 0;
+
+  /**
+   * The longest time in milliseconds the graceful shutdown can take, before the resource is forced to shut down. Negative means no other
+   * limit than the time share.
+   */
+  long maxGracefulTimeMs() default -1;
+
+  /**
+   * Share, between 0 and 1, of the time left for the resource, given to its graceful shutdown. The rest is left for the forced shutdown.
+   * Negative means the default share of the strategy.
+   */
+  double gracefulTimeShare() default -1;
+
+  /**
+   * When false, neither later tiers nor the green light of the strategy wait for the resource to terminate. It is still shut down, within
+   * the same time limits.
+   */
+  boolean drainCritical() default true;
+}
@@ -2,9 +2,21 @@ package com.transferwise.common.gracefulshutdown;
 
 import com.google.common.collect.ImmutableSet;
 import com.transferwise.common.gracefulshutdown.config.GracefulShutdownProperties;
+import com.transferwise.common.gracefulshutdown.timeline.ShutdownPhases;
+import com.transferwise.common.gracefulshutdown.timeline.ShutdownTimeline;
+import com.transferwise.common.gracefulshutdown.timeline.ShutdownTimelineEvent.Outcome;
+import com.transferwise.common.gracefulshutdown.timeline.ShutdownTimelineRecorder;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.InitializingBean;
@@ -29,6 +41,9 @@ public class GracefulShutdowner implements SmartLifecycle, InitializingBean {
   @Autowired
   private DefaultLifecycleProcessor defaultLifecycleProcessor;
 
+  @Autowired
+  private ShutdownTimelineRecorder shutdownTimelineRecorder;
+
   private volatile boolean running;
 
   @Override
@@ -51,13 +66,11 @@ public class GracefulShutdowner implements SmartLifecycle, InitializingBean {
 
     log.info("Notifying all strategies that the application has started.");
     var strategies = gracefulShutdownStrategiesRegistry.getStrategies();
-    for (var strategy : strategies) {
-      try {
-        strategy.applicationStarted();
-        log.debug("'applicationStarted' hook called for strategy '{}'", strategy);
-      } catch (Exception e) {
-        throw new IllegalStateException("'applicationStarted' hook failed for strategy '" + strategy + "'.", e);
-      }
+    try (var startupHooksExecutor = new StartupHooksExecutor(properties.getStartupHooks(), "gs-startup-hooks-")) {
+      startupHooksExecutor.callApplicationStarted(strategies);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while notifying strategies that the application has started.", e);
     }
   }
 
@@ -91,73 +104,237 @@ public class GracefulShutdowner implements SmartLifecycle, InitializingBean {
     this.running = false;
 
     long startTimeMs = System.currentTimeMillis();
-    try {
+    long startTimeNs = System.nanoTime();
+    var timeline = shutdownTimelineRecorder.startTimeline();
+    // Single deadline for everything, so time left unused by one strategy is available for the others.
+    var deadline = ShutdownDeadline.afterMillis((long) properties.getClientsReactionTimeMs() + properties.getShutdownTimeoutMs());
+    try (var hooksExecutor = new StrategyHooksExecutor(properties.getStrategyHooks(), "gs-shutdown-hooks-", timeline)) {
       log.info("Graceful shutdown initiated.");
 
       var strategies = new ArrayList<>(gracefulShutdownStrategiesRegistry.getStrategies());
       Collections.reverse(strategies);
 
-      for (var strategy : strategies) {
-        try {
-          strategy.prepareForShutdown();
-          log.debug("'prepareForShutdown' hook called for strategy '{}'", strategy);
-        } catch (Throwable t) {
-          log.error("Stopping strategy '{}' failed.", strategy, t);
-        }
-      }
+      // Strategies depending on others are prepared for shutdown only after their dependencies have drained.
+      var dependencyGraph = StrategiesDependencyGraph.build(strategies);
+      Set<GracefulShutdownStrategy> preparedStrategies = Collections.newSetFromMap(new IdentityHashMap<>());
+      Set<GracefulShutdownStrategy> greenLightStrategies = Collections.newSetFromMap(new IdentityHashMap<>());
+      Map<GracefulShutdownStrategy, Integer> redLightIterations = new IdentityHashMap<>();
 
-      log.info("Waiting for " + properties.getClientsReactionTimeMs() + " ms for clients to understand"
-          + " this node should not be called anymore.");
-      Thread.sleep(properties.getClientsReactionTimeMs());
+      var independentStrategies = dependencyGraph.getIndependentStrategies();
+      long phaseStartTimeNs = System.nanoTime();
+      hooksExecutor.callHook(independentStrategies, "prepareForShutdown", strategy -> strategy.prepareForShutdown(deadline));
+      preparedStrategies.addAll(independentStrategies);
+      phaseStartTimeNs = recordPhase(timeline, ShutdownPhases.PREPARE_FOR_SHUTDOWN, phaseStartTimeNs);
 
-      for (var strategy : strategies) {
-        try {
-          strategy.clientReactionTimePassed();
-          log.debug("'clientReactionTimePassed' hook called for strategy '{}'", strategy);
-        } catch (Throwable t) {
-          log.error("Notifying strategy '{}' about client reaction time passing failed.", strategy, t);
-        }
-      }
+      waitForClientsReaction(independentStrategies);
+      phaseStartTimeNs = recordPhase(timeline, ShutdownPhases.CLIENTS_REACTION, phaseStartTimeNs);
+
+      hooksExecutor.callHook(independentStrategies, "clientReactionTimePassed", GracefulShutdownStrategy::clientReactionTimePassed);
+      phaseStartTimeNs = recordPhase(timeline, ShutdownPhases.CLIENT_REACTION_TIME_PASSED, phaseStartTimeNs);
 
-      long canShutdownLoopStartTimeMs = System.currentTimeMillis();
       List<GracefulShutdownStrategy> redLightStrategies = new ArrayList<>(strategies);
+      int hopelessChecks = 0;
+      var drainOutcome = Outcome.TIMEOUT;
+
+      // Strategies are checked at least once, even when the deadline has already passed.
+      do {
+        var preparedRedLightStrategies = filter(redLightStrategies, preparedStrategies, true);
+        var stillRedLightStrategies = hooksExecutor.findRedLightStrategies(preparedRedLightStrategies);
+        preparedRedLightStrategies.removeIf(strategy -> stillRedLightStrategies.stream().anyMatch(red -> red == strategy));
+        greenLightStrategies.addAll(preparedRedLightStrategies);
+
+        long checkTimeNs = System.nanoTime();
+        for (var strategy : stillRedLightStrategies) {
+          redLightIterations.merge(strategy, 1, Integer::sum);
+        }
+        for (var strategy : preparedRedLightStrategies) {
+          timeline.recordGreenLight(strategy, checkTimeNs, redLightIterations.getOrDefault(strategy, 0), Outcome.SUCCESS);
+        }
 
-      while (System.currentTimeMillis() - canShutdownLoopStartTimeMs < properties.getShutdownTimeoutMs()) {
-        redLightStrategies = redLightStrategies.stream().filter(strategy -> {
-          try {
-            return !strategy.canShutdown();
-          } catch (Throwable t) {
-            log.error("Checking if strategy '{}' can shutdown, failed.", strategy, t);
-            return true;
-          }
-        }).collect(Collectors.toList());
+        var releasedStrategies = dependencyGraph.findReleasable(preparedStrategies, greenLightStrategies);
+        if (!releasedStrategies.isEmpty()) {
+          log.info("Dependencies of strategies '{}' have drained, preparing those for shutdown.", releasedStrategies);
+          // No clients reaction window, the clients of those are their dependencies, which have drained already.
+          hooksExecutor.callHook(releasedStrategies, "prepareForShutdown", strategy -> strategy.prepareForShutdown(deadline));
+          hooksExecutor.callHook(releasedStrategies, "clientReactionTimePassed", GracefulShutdownStrategy::clientReactionTimePassed);
+          preparedStrategies.addAll(releasedStrategies);
+        }
 
+        redLightStrategies = filter(strategies, greenLightStrategies, false);
         if (redLightStrategies.isEmpty()) {
           log.info("All strategies gave a green light for shutdown.");
           break;
         }
-        log.info("Not shutting down yet, '{}' strategies have red light. Waiting for {} ms for next check.",
-            redLightStrategies, properties.getStrategiesCheckIntervalTimeMs());
+        if (!releasedStrategies.isEmpty()) {
+          // Released strategies may have nothing to drain, so check them right away.
+          continue;
+        }
+        var estimatedDrainTimesMs = getEstimatedDrainTimesMs(redLightStrategies);
+        hopelessChecks = isDrainHopeless(redLightStrategies, estimatedDrainTimesMs, deadline) ? hopelessChecks + 1 : 0;
+        if (properties.getEarlyEscalation().isEnabled() && hopelessChecks >= properties.getEarlyEscalation().getConsecutiveChecks()) {
+          log.warn("Strategies '{}' are estimated to drain in {} ms, but only {} ms are left until the deadline. Not waiting for those anymore.",
+              redLightStrategies, estimatedDrainTimesMs.values(), deadline.remainingMillis());
+          drainOutcome = Outcome.ESCALATED;
+          break;
+        }
+        long checkIntervalMs = Math.min(properties.getStrategiesCheckIntervalTimeMs(), deadline.remainingMillis() + 1);
+        if (estimatedDrainTimesMs.isEmpty()) {
+          log.info("Not shutting down yet, '{}' strategies have red light. Waiting for up to {} ms for next check.",
+              redLightStrategies, checkIntervalMs);
+        } else {
+          log.info("Not shutting down yet, '{}' strategies have red light, estimated drain times are {} ms. Waiting for up to {} ms for next"
+              + " check.", redLightStrategies, estimatedDrainTimesMs, checkIntervalMs);
+        }
 
-        Thread.sleep(properties.getStrategiesCheckIntervalTimeMs());
-      }
+        waitForDrainCompletion(filter(redLightStrategies, preparedStrategies, true), checkIntervalMs);
+      } while (!deadline.isExpired());
 
-      for (var strategy : strategies) {
-        try {
-          strategy.applicationTerminating();
-          log.debug("'applicationTerminating' hook called for strategy '{}'", strategy);
-        } catch (Throwable t) {
-          log.error("Notifying strategy '{}' about termination, failed.", strategy, t);
-        }
+      long drainEndTimeNs = System.nanoTime();
+      for (var strategy : filter(strategies, greenLightStrategies, false)) {
+        timeline.recordGreenLight(strategy, drainEndTimeNs, redLightIterations.getOrDefault(strategy, 0), drainOutcome);
+      }
+      phaseStartTimeNs = recordPhase(timeline, ShutdownPhases.DRAIN, phaseStartTimeNs);
+
+      var notPreparedStrategies = filter(strategies, preparedStrategies, false);
+      if (!notPreparedStrategies.isEmpty()) {
+        log.warn("Strategies '{}' were not prepared for shutdown, because their dependencies did not drain in time. Preparing those right"
+            + " before terminating.", notPreparedStrategies);
+        // Strategies can rely on being prepared, before they are terminating.
+        hooksExecutor.callHook(notPreparedStrategies, "prepareForShutdown", strategy -> strategy.prepareForShutdown(deadline));
+        hooksExecutor.callHook(notPreparedStrategies, "clientReactionTimePassed", GracefulShutdownStrategy::clientReactionTimePassed);
       }
 
+      hooksExecutor.callHook(strategies, "applicationTerminating", GracefulShutdownStrategy::applicationTerminating);
+      recordPhase(timeline, ShutdownPhases.APPLICATION_TERMINATING, phaseStartTimeNs);
+
       log.info("Graceful shutdown routine finished in {} ms.", System.currentTimeMillis() - startTimeMs);
     } catch (Throwable t) {
       if (t instanceof InterruptedException) {
         Thread.currentThread().interrupt();
       }
       log.error("Graceful shutdown failed in {} ms.", System.currentTimeMillis() - startTimeMs, t);
+    } finally {
+      recordPhase(timeline, ShutdownPhases.TOTAL, startTimeNs);
+      shutdownTimelineRecorder.finishTimeline(timeline);
+    }
+  }
+
+  private static long recordPhase(ShutdownTimeline timeline, String phase, long phaseStartTimeNs) {
+    long nowNs = System.nanoTime();
+    timeline.recordPhase(phase, phaseStartTimeNs, nowNs);
+    return nowNs;
+  }
+
+  /**
+   * Waits for clients to understand, that this node should not be called anymore.
+   *
+   * <p>In adaptive mode, the wait ends early when none of the traffic observing strategies has seen a counted request for the quiet
+   * period.
+   */
+  protected void waitForClientsReaction(List<GracefulShutdownStrategy> strategies) throws InterruptedException {
+    var adaptiveProperties = properties.getAdaptiveClientsReaction();
+    var trafficObservers = strategies.stream().filter(TrafficObservingStrategy.class::isInstance)
+        .map(TrafficObservingStrategy.class::cast).collect(Collectors.toList());
+
+    if (!adaptiveProperties.isEnabled() || trafficObservers.isEmpty()) {
+      log.info("Waiting for " + properties.getClientsReactionTimeMs() + " ms for clients to understand"
+          + " this node should not be called anymore.");
+      Thread.sleep(properties.getClientsReactionTimeMs());
+      return;
+    }
+
+    log.info("Waiting for up to {} ms for clients to understand this node should not be called anymore, or until no requests have arrived"
+        + " for {} ms.", properties.getClientsReactionTimeMs(), adaptiveProperties.getQuietPeriodMs());
+
+    long startTimeNs = System.nanoTime();
+    long deadlineNs = startTimeNs + TimeUnit.MILLISECONDS.toNanos(properties.getClientsReactionTimeMs());
+    long quietPeriodNs = TimeUnit.MILLISECONDS.toNanos(adaptiveProperties.getQuietPeriodMs());
+    while (true) {
+      long nowNs = System.nanoTime();
+      if (nowNs - deadlineNs >= 0) {
+        return;
+      }
+      if (trafficObservers.stream().allMatch(observer -> nowNs - observer.getLastRequestArrivalNanos() >= quietPeriodNs)) {
+        log.info("No requests have arrived for {} ms, considering clients to have reacted after {} ms.", adaptiveProperties.getQuietPeriodMs(),
+            TimeUnit.NANOSECONDS.toMillis(nowNs - startTimeNs));
+        return;
+      }
+      Thread.sleep(Math.min(adaptiveProperties.getCheckIntervalMs(), TimeUnit.NANOSECONDS.toMillis(deadlineNs - nowNs) + 1));
+    }
+  }
+
+  /**
+   * Waits until any of the given strategies signals, that it has drained, or until the timeout has passed.
+   *
+   * <p>Strategies not providing a drain completion signal, are only polled after the timeout.
+   */
+  protected void waitForDrainCompletion(List<GracefulShutdownStrategy> redLightStrategies, long timeoutMs) throws InterruptedException {
+    var drainCompletions = new ArrayList<CompletableFuture<?>>();
+    for (var strategy : redLightStrategies) {
+      try {
+        var drainCompletion = strategy.getDrainCompletion();
+        // A completed signal of a strategy still having a red light would just make us spin.
+        if (drainCompletion != null && !drainCompletion.toCompletableFuture().isDone()) {
+          drainCompletions.add(drainCompletion.toCompletableFuture());
+        }
+      } catch (Throwable t) {
+        log.error("Getting drain completion signal of strategy '{}' failed.", strategy, t);
+      }
+    }
+
+    if (drainCompletions.isEmpty()) {
+      Thread.sleep(timeoutMs);
+      return;
+    }
+
+    try {
+      CompletableFuture.anyOf(drainCompletions.toArray(new CompletableFuture<?>[0])).get(timeoutMs, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException | ExecutionException ignored) {
+      // Either way, it is time to check the strategies again.
+    }
+  }
+
+  /**
+   * Returns the known drain time estimates of the given strategies, by strategy.
+   */
+  private static Map<GracefulShutdownStrategy, Long> getEstimatedDrainTimesMs(List<GracefulShutdownStrategy> strategies) {
+    Map<GracefulShutdownStrategy, Long> result = new LinkedHashMap<>();
+    for (var strategy : strategies) {
+      try {
+        long estimateMs = strategy.getEstimatedDrainTimeMs();
+        if (estimateMs >= 0) {
+          result.put(strategy, estimateMs);
+        }
+      } catch (Throwable t) {
+        log.error("Estimating drain time of strategy '{}' failed.", strategy, t);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * A drain is hopeless, when every red light strategy has an estimate, and none of those fits into the time left.
+   *
+   * <p>Waiting would not let any of those strategies drain, so there is nothing to lose by not waiting.
+   */
+  private static boolean isDrainHopeless(List<GracefulShutdownStrategy> redLightStrategies, Map<GracefulShutdownStrategy, Long> estimatesMs,
+      ShutdownDeadline deadline) {
+    if (estimatesMs.size() != redLightStrategies.size()) {
+      return false;
+    }
+    long remainingMs = deadline.remainingMillis();
+    return estimatesMs.values().stream().allMatch(estimateMs -> estimateMs > remainingMs);
+  }
+
+  private static List<GracefulShutdownStrategy> filter(List<GracefulShutdownStrategy> strategies, Set<GracefulShutdownStrategy> set,
+      boolean contained) {
+    var result = new ArrayList<GracefulShutdownStrategy>();
+    for (var strategy : strategies) {
+      if (set.contains(strategy) == contained) {
+        result.add(strategy);
+      }
     }
+    return result;
   }
 
   @Override
@@ -0,0 +1,153 @@
+package com.transferwise.common.gracefulshutdown;
+
+import com.transferwise.common.gracefulshutdown.config.GracefulShutdownProperties.StartupHooksProperties;
+import com.transferwise.common.gracefulshutdown.utils.VirtualThreadsUtils;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Calls `applicationStarted` hooks of strategies.
+ *
+ * <p>Strategies are split into consecutive groups with the same declared order, strategies not allowing a concurrent call get a group of
+ * their own. Groups are called one after another, strategies inside a group concurrently.
+ *
+ * <p>Fails fast, the first failed or timed out hook cancels the others and fails the startup.
+ */
+@Slf4j
+class StartupHooksExecutor implements AutoCloseable {
+
+  private static final String HOOK_NAME = "applicationStarted";
+
+  private final StartupHooksProperties properties;
+
+  private final ExecutorService executor;
+
+  StartupHooksExecutor(StartupHooksProperties properties, String threadNamePrefix) {
+    this.properties = properties;
+    this.executor = properties.isConcurrent() ? VirtualThreadsUtils.newThreadPerTaskExecutor(threadNamePrefix, properties.isVirtualThreads()) : null;
+  }
+
+  void callApplicationStarted(List<GracefulShutdownStrategy> strategies) throws InterruptedException {
+    if (executor == null) {
+      for (var strategy : strategies) {
+        try {
+          strategy.applicationStarted();
+          log.debug("'{}' hook called for strategy '{}'", HOOK_NAME, strategy);
+        } catch (Exception e) {
+          throw new IllegalStateException("'" + HOOK_NAME + "' hook failed for strategy '" + strategy + "'.", e);
+        }
+      }
+      return;
+    }
+
+    for (var group : StrategyHooksExecutor.splitToGroups(strategies, strategy -> !strategy.isApplicationStartedConcurrent())) {
+      callGroup(group);
+    }
+  }
+
+  private void callGroup(List<GracefulShutdownStrategy> group) throws InterruptedException {
+    var completionService = new ExecutorCompletionService<GracefulShutdownStrategy>(executor);
+    Map<Future<GracefulShutdownStrategy>, GracefulShutdownStrategy> futures = new IdentityHashMap<>();
+    for (var strategy : group) {
+      futures.put(completionService.submit(() -> {
+        strategy.applicationStarted();
+        return strategy;
+      }), strategy);
+    }
+
+    long deadlineNs = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.getTimeoutMs());
+    boolean failed = false;
+    boolean timedOut = false;
+    try {
+      for (int i = 0; i < group.size() && !failed; i++) {
+        var future = completionService.poll(Math.max(0, deadlineNs - System.nanoTime()), TimeUnit.NANOSECONDS);
+        if (future == null) {
+          timedOut = true;
+          failed = true;
+        } else {
+          failed = isFailed(future);
+          if (!failed) {
+            log.debug("'{}' hook called for strategy '{}'", HOOK_NAME, futures.get(future));
+          }
+        }
+      }
+    } finally {
+      if (failed) {
+        futures.keySet().forEach(future -> future.cancel(true));
+      }
+    }
+
+    if (failed) {
+      throw collectFailures(group, futures, timedOut);
+    }
+  }
+
+  private IllegalStateException collectFailures(List<GracefulShutdownStrategy> group,
+      Map<Future<GracefulShutdownStrategy>, GracefulShutdownStrategy> futures, boolean timedOut) {
+    var failures = new ArrayList<Throwable>();
+    var failedStrategies = new ArrayList<GracefulShutdownStrategy>();
+    for (var entry : futures.entrySet()) {
+      var future = entry.getKey();
+      var strategy = entry.getValue();
+      if (future.isCancelled()) {
+        if (timedOut) {
+          failedStrategies.add(strategy);
+          failures.add(new TimeoutException("'" + HOOK_NAME + "' hook for strategy '" + strategy + "' did not finish in "
+              + properties.getTimeoutMs() + " ms."));
+        }
+      } else if (isFailed(future)) {
+        failedStrategies.add(strategy);
+        failures.add(new IllegalStateException("'" + HOOK_NAME + "' hook failed for strategy '" + strategy + "'.", getFailure(future)));
+      }
+    }
+
+    // Keep the original order of strategies in the message.
+    var failedStrategiesInOrder = group.stream().filter(strategy -> failedStrategies.stream().anyMatch(failed -> failed == strategy))
+        .collect(Collectors.toList());
+    var exception = new IllegalStateException("'" + HOOK_NAME + "' hook failed for strategies '" + failedStrategiesInOrder + "'.",
+        failures.isEmpty() ? null : failures.get(0));
+    for (int i = 1; i < failures.size(); i++) {
+      exception.addSuppressed(failures.get(i));
+    }
+    return exception;
+  }
+
+  private static boolean isFailed(Future<?> future) {
+    return getFailure(future) != null;
+  }
+
+  private static Throwable getFailure(Future<?> future) {
+    if (!future.isDone() || future.isCancelled()) {
+      return null;
+    }
+    try {
+      future.get();
+      return null;
+    } catch (ExecutionException e) {
+      return e.getCause();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return e;
+    } catch (CancellationException e) {
+      return null;
+    }
+  }
+
+  @Override
+  public void close() {
+    if (executor != null) {
+      executor.shutdown();
+    }
+  }
+}
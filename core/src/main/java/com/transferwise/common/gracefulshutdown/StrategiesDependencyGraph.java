@@ -0,0 +1,120 @@
+package com.transferwise.common.gracefulshutdown;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Dependencies between strategies, declared by {@link GracefulShutdownStrategy#getShutdownDependencies()}.
+ *
+ * <p>Dependencies on types without any strategy present are ignored. When the dependencies contain a cycle, all dependencies are ignored
+ * and the strategies are shut down as if none were declared.
+ */
+@Slf4j
+class StrategiesDependencyGraph {
+
+  private final List<GracefulShutdownStrategy> strategies;
+
+  private final Map<GracefulShutdownStrategy, List<GracefulShutdownStrategy>> dependencies;
+
+  private StrategiesDependencyGraph(List<GracefulShutdownStrategy> strategies,
+      Map<GracefulShutdownStrategy, List<GracefulShutdownStrategy>> dependencies) {
+    this.strategies = strategies;
+    this.dependencies = dependencies;
+  }
+
+  static StrategiesDependencyGraph build(List<GracefulShutdownStrategy> strategies) {
+    Map<GracefulShutdownStrategy, List<GracefulShutdownStrategy>> dependencies = new IdentityHashMap<>();
+    for (var strategy : strategies) {
+      var strategyDependencies = new ArrayList<GracefulShutdownStrategy>();
+      try {
+        for (var dependencyType : strategy.getShutdownDependencies()) {
+          for (var candidate : strategies) {
+            if (candidate != strategy && dependencyType.isInstance(candidate) && !strategyDependencies.contains(candidate)) {
+              strategyDependencies.add(candidate);
+            }
+          }
+        }
+      } catch (Throwable t) {
+        log.error("Getting shutdown dependencies of strategy '{}' failed. Considering it as having none.", strategy, t);
+        strategyDependencies.clear();
+      }
+      dependencies.put(strategy, strategyDependencies);
+    }
+
+    var cycle = findCycle(strategies, dependencies);
+    if (cycle != null) {
+      log.error("Graceful shutdown strategies have cyclic dependencies '{}'. Ignoring all the declared dependencies.", cycle);
+      dependencies.replaceAll((strategy, strategyDependencies) -> Collections.emptyList());
+    }
+
+    return new StrategiesDependencyGraph(strategies, dependencies);
+  }
+
+  /**
+   * Returns strategies not depending on any other strategy, in the original order.
+   */
+  List<GracefulShutdownStrategy> getIndependentStrategies() {
+    var result = new ArrayList<GracefulShutdownStrategy>();
+    for (var strategy : strategies) {
+      if (dependencies.get(strategy).isEmpty()) {
+        result.add(strategy);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns not yet prepared strategies, whose dependencies all have given a green light, in the original order.
+   */
+  List<GracefulShutdownStrategy> findReleasable(Set<GracefulShutdownStrategy> preparedStrategies,
+      Set<GracefulShutdownStrategy> greenLightStrategies) {
+    var result = new ArrayList<GracefulShutdownStrategy>();
+    for (var strategy : strategies) {
+      if (!preparedStrategies.contains(strategy) && greenLightStrategies.containsAll(dependencies.get(strategy))) {
+        result.add(strategy);
+      }
+    }
+    return result;
+  }
+
+  private static List<GracefulShutdownStrategy> findCycle(List<GracefulShutdownStrategy> strategies,
+      Map<GracefulShutdownStrategy, List<GracefulShutdownStrategy>> dependencies) {
+    Set<GracefulShutdownStrategy> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+    List<GracefulShutdownStrategy> path = new ArrayList<>();
+    for (var strategy : strategies) {
+      var cycle = findCycle(strategy, dependencies, visited, path);
+      if (cycle != null) {
+        return cycle;
+      }
+    }
+    return null;
+  }
+
+  private static List<GracefulShutdownStrategy> findCycle(GracefulShutdownStrategy strategy,
+      Map<GracefulShutdownStrategy, List<GracefulShutdownStrategy>> dependencies, Set<GracefulShutdownStrategy> visited,
+      List<GracefulShutdownStrategy> path) {
+    for (int i = 0; i < path.size(); i++) {
+      if (path.get(i) == strategy) {
+        return new ArrayList<>(path.subList(i, path.size()));
+      }
+    }
+    if (!visited.add(strategy)) {
+      return null;
+    }
+
+    path.add(strategy);
+    for (var dependency : dependencies.get(strategy)) {
+      var cycle = findCycle(dependency, dependencies, visited, path);
+      if (cycle != null) {
+        return cycle;
+      }
+    }
+    path.remove(path.size() - 1);
+    return null;
+  }
+}
@@ -0,0 +1,263 @@
+package com.transferwise.common.gracefulshutdown;
+
+import com.transferwise.common.gracefulshutdown.config.GracefulShutdownProperties.StrategyHooksProperties;
+import com.transferwise.common.gracefulshutdown.timeline.ShutdownTimeline;
+import com.transferwise.common.gracefulshutdown.timeline.ShutdownTimelineEvent.Outcome;
+import com.transferwise.common.gracefulshutdown.utils.VirtualThreadsUtils;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.annotation.AnnotationAwareOrderComparator;
+
+/**
+ * Calls a hook of given strategies.
+ *
+ * <p>Strategies are split into consecutive groups with the same declared order. Groups are called one after another, strategies inside a
+ * group are called concurrently, each with its own timeout. This way a single slow or hanging strategy can not delay the others.
+ *
+ * <p>Hooks of the same strategy never overlap. When a hook has timed out, the next hook of that strategy is started only after it has
+ * finished, as strategies are not written to handle those concurrently.
+ *
+ * <p>Not thread safe, meant to be used only from the lifecycle thread.
+ */
+@Slf4j
+class StrategyHooksExecutor implements AutoCloseable {
+
+  private static final String CAN_SHUTDOWN_HOOK = "canShutdown";
+
+  private static final DeclaredOrderResolver declaredOrderResolver = new DeclaredOrderResolver();
+
+  private final StrategyHooksProperties properties;
+
+  private final ExecutorService executor;
+
+  private final ShutdownTimeline timeline;
+
+  private final Map<GracefulShutdownStrategy, Future<Boolean>> pendingCanShutdownCalls = new IdentityHashMap<>();
+
+  /**
+   * Hook calls, which have timed out, but may still be running, by strategy.
+   */
+  private final Map<GracefulShutdownStrategy, Future<?>> timedOutCalls = new IdentityHashMap<>();
+
+  StrategyHooksExecutor(StrategyHooksProperties properties, String threadNamePrefix, ShutdownTimeline timeline) {
+    this.properties = properties;
+    this.timeline = timeline;
+    this.executor = properties.isConcurrent() ? VirtualThreadsUtils.newThreadPerTaskExecutor(threadNamePrefix, properties.isVirtualThreads()) : null;
+  }
+
+  /**
+   * Calls the hook for all strategies.
+   *
+   * <p>Failures and timeouts are logged and otherwise ignored.
+   */
+  void callHook(List<GracefulShutdownStrategy> strategies, String hookName, Hook hook) throws InterruptedException {
+    for (var group : splitToGroups(strategies)) {
+      if (executor == null) {
+        for (var strategy : group) {
+          try {
+            callAndRecord(hookName, hook, strategy);
+            log.debug("'{}' hook called for strategy '{}'", hookName, strategy);
+          } catch (Throwable t) {
+            log.error("'{}' hook failed for strategy '{}'.", hookName, strategy, t);
+          }
+        }
+        continue;
+      }
+
+      long startNs = System.nanoTime();
+      var futures = new ArrayList<Future<?>>(group.size());
+      for (var strategy : group) {
+        futures.add(submitAfterTimedOutCall(strategy, () -> {
+          callAndRecord(hookName, hook, strategy);
+          return null;
+        }));
+      }
+
+      long deadlineNs = startNs + TimeUnit.MILLISECONDS.toNanos(properties.getTimeoutMs());
+      for (int i = 0; i < group.size(); i++) {
+        var strategy = group.get(i);
+        try {
+          futures.get(i).get(Math.max(0, deadlineNs - System.nanoTime()), TimeUnit.NANOSECONDS);
+          log.debug("'{}' hook called for strategy '{}'", hookName, strategy);
+        } catch (ExecutionException e) {
+          log.error("'{}' hook failed for strategy '{}'.", hookName, strategy, e.getCause());
+        } catch (TimeoutException e) {
+          log.error("'{}' hook for strategy '{}' did not finish in {} ms. Not waiting for it anymore.", hookName, strategy,
+              properties.getTimeoutMs());
+          timedOutCalls.put(strategy, futures.get(i));
+          recordTimeout(hookName, strategy, startNs);
+        }
+      }
+    }
+  }
+
+  /**
+   * Asks all strategies if the application can shut down.
+   *
+   * <p>Failed strategies are considered as having a red light, timed out ones according to configuration. A strategy with still running
+   * `canShutdown` call from previous check, is not called again, we just keep waiting for the previous call.
+   *
+   * @return strategies having a red light
+   */
+  List<GracefulShutdownStrategy> findRedLightStrategies(List<GracefulShutdownStrategy> strategies) throws InterruptedException {
+    var redLightStrategies = new ArrayList<GracefulShutdownStrategy>();
+    for (var group : splitToGroups(strategies)) {
+      if (executor == null) {
+        for (var strategy : group) {
+          try {
+            if (!callAndRecord(strategy)) {
+              redLightStrategies.add(strategy);
+            }
+          } catch (Throwable t) {
+            log.error("Checking if strategy '{}' can shutdown, failed.", strategy, t);
+            redLightStrategies.add(strategy);
+          }
+        }
+        continue;
+      }
+
+      long startNs = System.nanoTime();
+      var futures = new ArrayList<Future<Boolean>>(group.size());
+      for (var strategy : group) {
+        var future = pendingCanShutdownCalls.remove(strategy);
+        if (future == null) {
+          future = submitAfterTimedOutCall(strategy, () -> callAndRecord(strategy));
+        }
+        futures.add(future);
+      }
+
+      long deadlineNs = startNs + TimeUnit.MILLISECONDS.toNanos(properties.getTimeoutMs());
+      for (int i = 0; i < group.size(); i++) {
+        var strategy = group.get(i);
+        var future = futures.get(i);
+        try {
+          if (!future.get(Math.max(0, deadlineNs - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+            redLightStrategies.add(strategy);
+          }
+        } catch (ExecutionException e) {
+          log.error("Checking if strategy '{}' can shutdown, failed.", strategy, e.getCause());
+          redLightStrategies.add(strategy);
+        } catch (TimeoutException e) {
+          log.error("Checking if strategy '{}' can shutdown did not finish in {} ms. Considering it as having a {} light.", strategy,
+              properties.getTimeoutMs(), properties.isTimedOutCanShutdown() ? "green" : "red");
+          pendingCanShutdownCalls.put(strategy, future);
+          timedOutCalls.put(strategy, future);
+          recordTimeout(CAN_SHUTDOWN_HOOK, strategy, startNs);
+          if (!properties.isTimedOutCanShutdown()) {
+            redLightStrategies.add(strategy);
+          }
+        }
+      }
+    }
+    return redLightStrategies;
+  }
+
+  /**
+   * Submits a hook call, which starts only after the timed out previous call of the strategy has finished.
+   *
+   * <p>The waiting is done on the executor, so it counts into the timeout of the new call, and does not block the lifecycle thread.
+   */
+  private <T> Future<T> submitAfterTimedOutCall(GracefulShutdownStrategy strategy, Callable<T> call) {
+    var timedOutCall = timedOutCalls.remove(strategy);
+    if (timedOutCall == null || timedOutCall.isDone()) {
+      return executor.submit(call);
+    }
+    return executor.submit(() -> {
+      try {
+        timedOutCall.get();
+      } catch (ExecutionException | CancellationException e) {
+        // We have given up on it already.
+      }
+      return call.call();
+    });
+  }
+
+  private void callAndRecord(String hookName, Hook hook, GracefulShutdownStrategy strategy) throws Exception {
+    long startNs = System.nanoTime();
+    var outcome = Outcome.FAILURE;
+    try {
+      hook.call(strategy);
+      outcome = Outcome.SUCCESS;
+    } finally {
+      timeline.recordHook(hookName, strategy, startNs, System.nanoTime(), outcome);
+    }
+  }
+
+  private boolean callAndRecord(GracefulShutdownStrategy strategy) {
+    long startNs = System.nanoTime();
+    var outcome = Outcome.FAILURE;
+    try {
+      var result = strategy.canShutdown();
+      outcome = Outcome.SUCCESS;
+      return result;
+    } finally {
+      timeline.recordHook(CAN_SHUTDOWN_HOOK, strategy, startNs, System.nanoTime(), outcome);
+    }
+  }
+
+  private void recordTimeout(String hookName, GracefulShutdownStrategy strategy, long startNs) {
+    timeline.recordHook(hookName, strategy, startNs, System.nanoTime(), Outcome.TIMEOUT);
+  }
+
+  @Override
+  public void close() {
+    if (executor != null) {
+      // Hanging hooks are abandoned, we do not want to wait for those.
+      executor.shutdown();
+    }
+  }
+
+  private static List<List<GracefulShutdownStrategy>> splitToGroups(List<GracefulShutdownStrategy> strategies) {
+    return splitToGroups(strategies, strategy -> false);
+  }
+
+  /**
+   * Splits strategies into consecutive groups with the same declared order.
+   *
+   * @param alone strategies, which have to be in a group of their own
+   */
+  static List<List<GracefulShutdownStrategy>> splitToGroups(List<GracefulShutdownStrategy> strategies,
+      Predicate<GracefulShutdownStrategy> alone) {
+    var groups = new ArrayList<List<GracefulShutdownStrategy>>();
+    List<GracefulShutdownStrategy> group = null;
+    Integer groupOrder = null;
+    boolean groupAlone = false;
+    for (var strategy : strategies) {
+      var order = declaredOrderResolver.findDeclaredOrder(strategy);
+      var strategyAlone = alone.test(strategy);
+      if (group == null || groupAlone || strategyAlone || !Objects.equals(order, groupOrder)) {
+        group = new ArrayList<>();
+        groups.add(group);
+        groupOrder = order;
+        groupAlone = strategyAlone;
+      }
+      group.add(strategy);
+    }
+    return groups;
+  }
+
+  @FunctionalInterface
+  interface Hook {
+
+    void call(GracefulShutdownStrategy strategy) throws Exception;
+  }
+
+  private static class DeclaredOrderResolver extends AnnotationAwareOrderComparator {
+
+    Integer findDeclaredOrder(Object strategy) {
+      return findOrder(strategy);
+    }
+  }
+}
@@ -0,0 +1,16 @@
+package com.transferwise.common.gracefulshutdown;
+
+/**
+ * Strategy seeing the incoming traffic, which allows to end the clients reaction window early.
+ *
+ * <p>Used, when `tw-graceful-shutdown.adaptive-clients-reaction.enabled` is set.
+ */
+public interface TrafficObservingStrategy {
+
+  /**
+   * Returns {@link System#nanoTime()} of the last counted request arrival, but not earlier than the moment the shutdown was prepared.
+   *
+   * <p>Only meaningful after {@link GracefulShutdownStrategy#prepareForShutdown()} has been called.
+   */
+  long getLastRequestArrivalNanos();
+}
@@ -30,6 +30,7 @@ public class GracefulShutdownEnvironmentPostProcessor implements EnvironmentPost
         .set("shutdown-timeout-ms", 1)
         .set("clients-reaction-time-ms", 1)
         .set("strategies-check-interval-time-ms", 5)
+        .set("timeline-file", "")
     );
   }
 
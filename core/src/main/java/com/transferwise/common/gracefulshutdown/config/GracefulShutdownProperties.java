@@ -1,5 +1,8 @@
 package com.transferwise.common.gracefulshutdown.config;
 
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
@@ -12,6 +15,121 @@ public class GracefulShutdownProperties {
     private boolean enabled;
   }
 
+  @Data
+  public static class AdaptiveClientsReactionProperties {
+
+    /**
+     * End the clients reaction window early, when no counted request has arrived for `quietPeriodMs` after the shutdown was prepared.
+     *
+     * <p>`clientsReactionTimeMs` stays as the upper bound.
+     */
+    private boolean enabled = false;
+
+    private int quietPeriodMs = 5_000;
+
+    private int checkIntervalMs = 100;
+  }
+
+  @Data
+  public static class EarlyEscalationProperties {
+
+    /**
+     * Stop waiting for the drain, when estimated drain times of all red light strategies exceed the time left until the deadline.
+     *
+     * <p>Strategies not estimating their drain time prevent the escalation.
+     */
+    private boolean enabled = false;
+
+    /**
+     * How many checks in a row the drain has to look hopeless, so a single outlier estimate does not cut the drain short.
+     */
+    private int consecutiveChecks = 3;
+  }
+
+  @Data
+  public static class ResourceShutdownProperties {
+
+    /**
+     * Shut resources down on virtual threads, when the JVM supports those, so blocking shutdown calls do not need a sized pool.
+     *
+     * <p>Otherwise, a pool of platform threads is sized to the number of resources shut down in parallel.
+     */
+    private boolean virtualThreads = true;
+
+    /**
+     * Record executor services and task schedulers as beans are created, instead of scanning the application context for those on shutdown.
+     */
+    private boolean index = true;
+
+    /**
+     * Shutdown policies by bean name, overriding the `@GracefulShutdownPolicy` of the bean.
+     */
+    private Map<String, ResourcePolicyProperties> policies = new HashMap<>();
+  }
+
+  /**
+   * Same as `@GracefulShutdownPolicy`, values not set are taken from the annotation, or the defaults.
+   */
+  @Data
+  public static class ResourcePolicyProperties {
+
+    private Integer tier;
+
+    private Long maxGracefulTimeMs;
+
+    private Double gracefulTimeShare;
+
+    private Boolean drainCritical;
+  }
+
+  @Data
+  public static class StrategyHooksProperties {
+
+    /**
+     * Call hooks of strategies without a declared order concurrently.
+     *
+     * <p>Strategies with a declared order (e.g. `@Order` or `Ordered`) are still called group by group in that order.
+     */
+    private boolean concurrent = false;
+
+    /**
+     * Run the hooks on virtual threads, when the JVM supports those.
+     */
+    private boolean virtualThreads = true;
+
+    /**
+     * How long a single hook call of a single strategy can take, before we stop waiting for it.
+     */
+    private int timeoutMs = 10_000;
+
+    /**
+     * Consider a strategy giving a green light, when its `canShutdown` call times out.
+     */
+    private boolean timedOutCanShutdown = false;
+  }
+
+  @Data
+  public static class StartupHooksProperties {
+
+    /**
+     * Call `applicationStarted` hooks of strategies concurrently.
+     *
+     * <p>Strategies with a declared order are still called group by group in that order, and strategies opting out with
+     * `isApplicationStartedConcurrent` are called alone.
+     */
+    private boolean concurrent = false;
+
+    /**
+     * Run the hooks on virtual threads, when the JVM supports those.
+     */
+    private boolean virtualThreads = true;
+
+    /**
+     * How long a single `applicationStarted` call can take, before the startup is failed.
+     */
+    private int timeoutMs = 60_000;
+  }
+
   private int shutdownTimeoutMs = 90_000;
 
   private int clientsReactionTimeMs = 30_000;
@@ -24,6 +142,23 @@ public class GracefulShutdownProperties {
   // We would create artificial delay, before we allow latency sensitive REST calls in.
   private int startupHealthyDelayMs = 0;
 
+  /**
+   * Where to persist the timeline of a shutdown, so it can be reported by the next process start.
+   *
+   * <p>Empty value disables the persistence.
+   */
+  private String timelineFile = Paths.get(System.getProperty("java.io.tmpdir"), "tw-graceful-shutdown-timeline.tsv").toString();
+
+  private StrategyHooksProperties strategyHooks = new StrategyHooksProperties();
+
+  private StartupHooksProperties startupHooks = new StartupHooksProperties();
+
+  private AdaptiveClientsReactionProperties adaptiveClientsReaction = new AdaptiveClientsReactionProperties();
+
+  private EarlyEscalationProperties earlyEscalation = new EarlyEscalationProperties();
+
+  private ResourceShutdownProperties resourceShutdown = new ResourceShutdownProperties();
+
   private FlagProperty healthIndicator;
   private FlagProperty requestCountStrategy;
   private FlagProperty kagkarlssonDbScheduler;
@@ -1,18 +1,147 @@
 package com.transferwise.common.gracefulshutdown.config;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 @ConfigurationProperties(value = "tw-graceful-shutdown.request-count-strategy", ignoreUnknownFields = false)
 @Data
+@SuppressWarnings("checkstyle:magicnumber")
 public class RequestCountStrategyProperties {
 
+  @Data
+  public static class InFlightRegistryProperties {
+
+    /**
+     * Registers in-flight requests, so the ones blocking the drain can be reported.
+     */
+    private boolean enabled = false;
+    /**
+     * Preallocated slots, requests arriving when all are taken are counted, but not registered.
+     */
+    private int capacity = 1024;
+    /**
+     * How many of the longest running requests are reported.
+     */
+    private int topN = 10;
+    /**
+     * Minimum interval between reports logged while the strategy does not give a green light.
+     */
+    private int reportIntervalMs = 5_000;
+  }
+
+  @Data
+  public static class DrainTimeLimitProperties {
+
+    /**
+     * Exact URIs or Ant-style patterns of requests the limit applies to.
+     */
+    private List<String> uris = new ArrayList<>();
+    /**
+     * How long a matching request can keep the drain waiting, after requests are not accepted anymore.
+     */
+    private int maxDrainTimeMs = 30_000;
+    /**
+     * Interrupt the thread of a synchronous request over the limit. Async requests are always completed with 503.
+     */
+    private boolean interruptThread = false;
+  }
+
+  @Data
+  public static class WarmUpProperties {
+
+    /**
+     * Sheds requests with 503 while the JVM is still cold, so it is not overloaded right after the health is reported as UP.
+     */
+    private boolean enabled = false;
+    /**
+     * How long the admission ramp takes, from the first counted request after the application has started.
+     */
+    private int durationMs = 60_000;
+    /**
+     * Concurrency cap at the start of the ramp, grows linearly to `maxConcurrency`. There is no cap after the ramp.
+     */
+    private int initialConcurrency = 8;
+    /**
+     * Concurrency cap at the end of the ramp.
+     */
+    private int maxConcurrency = 200;
+    /**
+     * Share of requests accepted at the start of the ramp, grows linearly to all requests.
+     */
+    private double initialAcceptedShare = 0.25;
+  }
+
+  @Data
+  public static class ConcurrencyLimitProperties {
+
+    /**
+     * Rejects requests with 503, when the concurrency limit adapted to the observed latency is reached.
+     */
+    private boolean enabled = false;
+    private int initialLimit = 100;
+    private int minLimit = 10;
+    private int maxLimit = 1_000;
+    /**
+     * Latencies are averaged over windows of this length, and the limit is updated after each.
+     */
+    private int windowMs = 1_000;
+    /**
+     * How many times the average latency can be above its baseline, before the limit starts to shrink.
+     */
+    private double latencyTolerance = 1.5;
+    /**
+     * How much of a new limit is taken over after each window, between 0 and 1.
+     */
+    private double smoothing = 0.2;
+  }
+
   private int filterOrder = Integer.MIN_VALUE;
   private boolean enabled = true;
+  /**
+   * Requests to those URIs are not counted.
+   *
+   * <p>Exact URIs and Ant-style patterns, e.g. `/actuator/health/**`, are supported.
+   */
   private Set<String> ignoredUris = new HashSet<>(Arrays.asList(
-      "/health", "/actuator/health", "/prometheus", "/actuator/prometheus",
+      "/health", "/actuator/health", "/actuator/health/**", "/prometheus", "/actuator/prometheus",
       "/liveness", "/actuator/liveness"));
+  /**
+   * Requests with those HTTP methods, e.g. `OPTIONS`, are not counted. Case insensitive.
+   */
+  private Set<String> ignoredMethods = new HashSet<>();
+  /**
+   * Requests with those dispatcher types, e.g. `FORWARD`, are not counted. Case insensitive, unknown ones fail the startup.
+   */
+  private Set<String> ignoredDispatcherTypes = new HashSet<>();
+
+  /**
+   * Once shutdown is prepared, HTTP/1.1 responses get `Connection: close`, so clients reconnect to other nodes before we start rejecting.
+   */
+  private boolean drainConnections = true;
+  /**
+   * `Retry-After` of rejected requests, in seconds, 0 to not send it.
+   */
+  private int retryAfterSeconds = 1;
+  /**
+   * Minimum interval between summaries of late and rejected requests, logged instead of a line per request.
+   */
+  private int requestsSummaryIntervalMs = 5_000;
+
+  private InFlightRegistryProperties inFlightRegistry = new InFlightRegistryProperties();
+
+  /**
+   * Requests over their limit are cut off, so a few long-polling or export requests do not block the drain until the deadline.
+   *
+   * <p>The first limit matching a request applies. Needs the in-flight registry, which is enabled, when any limit is configured.
+   */
+  private List<DrainTimeLimitProperties> drainTimeLimits = new ArrayList<>();
+
+  private WarmUpProperties warmUp = new WarmUpProperties();
+
+  private ConcurrencyLimitProperties concurrencyLimit = new ConcurrencyLimitProperties();
 }
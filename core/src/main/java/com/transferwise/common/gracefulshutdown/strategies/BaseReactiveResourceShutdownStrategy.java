@@ -1,20 +1,35 @@
 package com.transferwise.common.gracefulshutdown.strategies;
 
 import com.transferwise.common.gracefulshutdown.GracefulShutdownIgnore;
+import com.transferwise.common.gracefulshutdown.GracefulShutdownPolicy;
 import com.transferwise.common.gracefulshutdown.GracefulShutdownStrategy;
+import com.transferwise.common.gracefulshutdown.ShutdownDeadline;
 import com.transferwise.common.gracefulshutdown.config.GracefulShutdownProperties;
+import com.transferwise.common.gracefulshutdown.utils.ExecutorShutdownUtils;
+import com.transferwise.common.gracefulshutdown.utils.TerminationNotifyingExecutor;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NonNull;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.NoSuchBeanDefinitionException;
 import org.springframework.context.ApplicationContext;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -30,6 +45,7 @@ public abstract class BaseReactiveResourceShutdownStrategy<T> implements Gracefu
     this.resourceType = resourceType;
     this.applicationContext = applicationContext;
     this.gracefulShutdownProperties = gracefulShutdownProperties;
+    this.addedResources = new ShutdownResourceRegistry<>(this::isResourceTerminated);
   }
 
 
@@ -50,35 +66,83 @@ public abstract class BaseReactiveResourceShutdownStrategy<T> implements Gracefu
   @NonNull
   private final GracefulShutdownProperties gracefulShutdownProperties;
 
-  @Getter(AccessLevel.PROTECTED)
-  private final Scheduler shutdownScheduler = Schedulers.newBoundedElastic(
-      10,
-      100_000,
-      "ShutdownWorker_" + this.getClass().getSimpleName()
-  );
+  /**
+   * Acquired from {@link SharedShutdownScheduler} only when needed, i.e. on {@link #prepareForShutdown()}.
+   */
+  private Scheduler shutdownScheduler;
+
+  private boolean shutdownSchedulerReleased;
+
+  private final AtomicBoolean shutdownStarted = new AtomicBoolean();
+
+  /**
+   * Shutdowns still using the scheduler, the one of all drain-critical resources, and one per resource not drain-critical.
+   */
+  private final AtomicInteger pendingShutdowns = new AtomicInteger(1);
 
-  private final List<T> addedResources = new ArrayList<>();
+  private final ShutdownResourceRegistry<T> addedResources;
+
+  /**
+   * Resources recorded as beans were created. Without it, the application context is scanned for resources on shutdown.
+   */
+  @Setter
+  private volatile ShutdownResourcesIndex resourcesIndex;
 
   private final AtomicBoolean isShutdownAllowed = new AtomicBoolean(false);
 
+  private final CompletableFuture<Void> drainCompletion = new CompletableFuture<>();
+
+  private volatile ShutdownDeadline shutdownDeadline;
+
+  /**
+   * The scheduler shared by all resource strategies, created on the first call.
+   *
+   * <p>Once this strategy has released it, Reactor's bounded elastic scheduler is returned, as the shared one may have been shut down.
+   *
+   * @return {@link Scheduler} to run shutdown tasks on
+   */
+  protected Scheduler getShutdownScheduler() {
+    return acquireShutdownScheduler(1);
+  }
+
+  private synchronized Scheduler acquireShutdownScheduler(int parallelism) {
+    if (shutdownSchedulerReleased) {
+      return Schedulers.boundedElastic();
+    }
+    if (shutdownScheduler == null) {
+      shutdownScheduler = SharedShutdownScheduler.INSTANCE.acquire(parallelism, gracefulShutdownProperties.getResourceShutdown().isVirtualThreads());
+    }
+    return shutdownScheduler;
+  }
+
+  private void releaseShutdownSchedulerWhenDone() {
+    if (pendingShutdowns.decrementAndGet() == 0) {
+      releaseShutdownScheduler();
+    }
+  }
+
+  private synchronized void releaseShutdownScheduler() {
+    if (shutdownScheduler != null && !shutdownSchedulerReleased) {
+      shutdownSchedulerReleased = true;
+      shutdownScheduler = null;
+      SharedShutdownScheduler.INSTANCE.release();
+    }
+  }
 
   /**
    * {@link Duration} allowed for resource to force shut down. If not shut down within this time - error will be logged.
    *
+   * <p>Evaluated when the forced shutdown of a resource starts, so it also gets the time left unused by the graceful shutdown.
+   *
    * @return {@link Duration}
    */
   private Duration getResourceForcedShutdownTimeout() {
-    // This checks incorrect configuration. Timeout error will be logged.
-    if (getStrategyShutdownDelay().toMillis() > getResourceFullShutdownTimeoutMs()) {
-      return Duration.ZERO;
-    }
-
     // use remaining time for forced shutdown
-    return Duration.ofMillis(getResourceFullShutdownTimeoutMs() - getResourceGracefulShutdownTimeout().toMillis());
+    return Duration.ofMillis(Math.max(0, getResourceFullShutdownTimeoutMs()));
   }
 
   /**
-   * Interval between checks of the resource termination status. Used by {@link #waitTermination}
+   * Interval between checks of the resource termination status, when its termination can only be polled. Used by {@link #waitTermination}
    *
    * @return {@link Duration} between termination check
    */
@@ -86,9 +150,21 @@ public abstract class BaseReactiveResourceShutdownStrategy<T> implements Gracefu
     return Duration.ofMillis(this.getGracefulShutdownProperties().getResourceCheckIntervalTimeMs());
   }
 
+  /**
+   * The deadline of the whole shutdown.
+   *
+   * <p>When {@link #prepareForShutdown()} was called directly, without a deadline, `shutdownTimeoutMs` from that moment is used.
+   *
+   * @return {@link ShutdownDeadline}
+   */
+  protected ShutdownDeadline getShutdownDeadline() {
+    var deadline = shutdownDeadline;
+    return deadline == null ? ShutdownDeadline.afterMillis(gracefulShutdownProperties.getShutdownTimeoutMs()) : deadline;
+  }
+
   /**
    * Will delay strategy shutdown for this {@link Duration}.
-   * This will additionally affect {@link #getResourceGracefulShutdownTimeout}
+   * The delay is spent from the {@link #getShutdownDeadline()}, so it reduces {@link #getResourceGracefulShutdownTimeout}
    * and {@link #getResourceForcedShutdownTimeout}
    * <p>
    *   Read {@link #getResourceGracefulShutdownTimeShare} for more info.
@@ -105,36 +181,37 @@ public abstract class BaseReactiveResourceShutdownStrategy<T> implements Gracefu
    * @return {@link Duration}
    */
   protected Duration getStrategyShutdownTimeout() {
-    return Duration.ofMillis(this.gracefulShutdownProperties.getShutdownTimeoutMs());
+    return getShutdownDeadline().remaining();
   }
 
   /**
-   * Time in Ms within resource should shut down.
+   * Time in Ms within resource should shut down, i.e. the time remaining until the {@link #getShutdownDeadline()}.
    * @return Time in Ms
    */
   protected int getResourceFullShutdownTimeoutMs() {
-    // resource should shut down a little earlier than StrategyShutdownTimeout
-    int result = this.gracefulShutdownProperties.getShutdownTimeoutMs() - 250;
+    long remainingMs = Math.min(getShutdownDeadline().remainingMillis(), Integer.MAX_VALUE);
+    // resource should shut down a little earlier than the deadline
+    long result = remainingMs - 250;
     if (result < 1000) {
-      result = this.gracefulShutdownProperties.getShutdownTimeoutMs();
+      result = remainingMs;
     }
 
-    return result;
+    return (int) result;
   }
 
   /**
    * Split ResourceFullShutdownTimeout between graceful and forced shutdown. Value between 0 and 1 is expected where 1 means 100%.
    * <ul>
    *   <li>{@link #getResourceGracefulShutdownTimeout} =
-   *   ({@link #getResourceFullShutdownTimeoutMs} -
-   *   {@link #getStrategyShutdownDelay}) *
+   *   {@link #getResourceFullShutdownTimeoutMs} *
    *   {@link #getResourceGracefulShutdownTimeShare}
    *   </li>
-   *   <li>{@link #getResourceForcedShutdownTimeout} =
-   *   {@link #getResourceFullShutdownTimeoutMs} -
-   *   {@link #getResourceGracefulShutdownTimeout}
+   *   <li>{@link #getResourceForcedShutdownTimeout} = whatever is left of
+   *   {@link #getResourceFullShutdownTimeoutMs}, when the forced shutdown starts
    *   </li>
    * </ul>
+   * Both are evaluated after {@link #getStrategyShutdownDelay} has passed.
+   * Overridden per resource by {@link GracefulShutdownPolicy#gracefulTimeShare()}.
    *
    * @return time share of ResourceFullShutdownTimeout dedicated to graceful shutdown
    */
@@ -146,28 +223,33 @@ public abstract class BaseReactiveResourceShutdownStrategy<T> implements Gracefu
    * {@link Duration} allowed for resource to shut down gracefully. If not shut down within this time -
    * {@link #shutdownResourceForced} will be called.
    *
+   * @param policy {@link ResourceShutdownPolicy} of the resource, which can change the share and limit the duration
    * @return {@link Duration}
    */
-  private Duration getResourceGracefulShutdownTimeout() {
-    // This checks incorrect configuration. Timeout error will be logged.
-    if (getStrategyShutdownDelay().toMillis() > getResourceFullShutdownTimeoutMs()) {
-      return Duration.ZERO;
-    }
-
-    // getStrategyShutdownDelay time of getResourceFullShutdownTimeoutMs was already used.
-    // use ResourceGracefulShutdownTimeShare of remaining time for graceful shutdown
-    double gracefulShutdownShare = Math.min(getResourceGracefulShutdownTimeShare(), 1d);
+  private Duration getResourceGracefulShutdownTimeout(ResourceShutdownPolicy policy) {
+    double share = policy.getGracefulTimeShare() < 0 ? getResourceGracefulShutdownTimeShare() : policy.getGracefulTimeShare();
+    double gracefulShutdownShare = Math.min(share, 1d);
 
-    int resourceGracefulShutdownTimeMS = (int) ((getResourceFullShutdownTimeoutMs() - getStrategyShutdownDelay().toMillis()) * gracefulShutdownShare);
-    return Duration.ofMillis(resourceGracefulShutdownTimeMS);
+    long resourceGracefulShutdownTimeMs = (long) (getResourceFullShutdownTimeoutMs() * gracefulShutdownShare);
+    if (policy.getMaxGracefulTimeMs() >= 0) {
+      resourceGracefulShutdownTimeMs = Math.min(resourceGracefulShutdownTimeMs, policy.getMaxGracefulTimeMs());
+    }
+    return Duration.ofMillis(Math.max(0, resourceGracefulShutdownTimeMs));
   }
 
   /**
-   * Prepare {@link Set} of resources for shutdown by extracting Beans of {@link #getResourceType()} from application context
-   * and add manually added resources by {@link #addResource}.
+   * Prepare {@link Set} of resources for shutdown by extracting Beans of {@link #getResourceType()} from the {@link ShutdownResourcesIndex},
+   * or from application context, when not indexed, and add manually added resources by {@link #addResource}.
    * @return {@link Set} of resources for shutdown
    */
   public Set<T> getResourcesForShutdown() {
+    var index = resourcesIndex;
+    if (index != null) {
+      Set<T> allResources = index.getResources(getResourceType());
+      allResources.addAll(addedResources.getResources());
+      return allResources;
+    }
+
     Set<Object> ignoredBeans = applicationContext.getBeansWithAnnotation(GracefulShutdownIgnore.class)
         .values().stream()
         .collect(Collectors.toUnmodifiableSet());
@@ -177,11 +259,51 @@ public abstract class BaseReactiveResourceShutdownStrategy<T> implements Gracefu
         .filter(e -> !ignoredBeans.contains(e))
         .collect(Collectors.toSet());
 
-    allResources.addAll(addedResources);
+    allResources.addAll(addedResources.getResources());
 
     return allResources;
   }
 
+  /**
+   * Resolves the {@link ResourceShutdownPolicy} of each resource, from its {@link GracefulShutdownPolicy}, overridden by
+   * `resource-shutdown.policies` of its bean name. Resources not being beans get {@link ResourceShutdownPolicy#DEFAULT}.
+   *
+   * @param resources resources to shut down
+   * @return policies by the resources
+   */
+  protected Map<T, ResourceShutdownPolicy> getResourceShutdownPolicies(Collection<T> resources) {
+    var policiesProperties = gracefulShutdownProperties.getResourceShutdown().getPolicies();
+    Map<Object, String> beanNames = getResourceBeanNames();
+    Map<T, ResourceShutdownPolicy> result = new IdentityHashMap<>();
+    for (T resource : resources) {
+      String beanName = beanNames.get(resource);
+      if (beanName == null) {
+        result.put(resource, ResourceShutdownPolicy.DEFAULT);
+      } else {
+        result.put(resource, ResourceShutdownPolicy.of(findPolicyAnnotation(beanName), policiesProperties.get(beanName)));
+      }
+    }
+    return result;
+  }
+
+  private Map<Object, String> getResourceBeanNames() {
+    var index = resourcesIndex;
+    if (index != null) {
+      return index.getBeanNames(getResourceType());
+    }
+    Map<Object, String> beanNames = new IdentityHashMap<>();
+    applicationContext.getBeansOfType(getResourceType()).forEach((beanName, bean) -> beanNames.put(bean, beanName));
+    return beanNames;
+  }
+
+  private GracefulShutdownPolicy findPolicyAnnotation(String beanName) {
+    try {
+      return applicationContext.findAnnotationOnBean(beanName, GracefulShutdownPolicy.class);
+    } catch (NoSuchBeanDefinitionException e) {
+      return null;
+    }
+  }
+
   /**
    * Default implementation of {@link GracefulShutdownStrategy#prepareForShutdown()}. Will search in {@link ApplicationContext} for Beans of
    * {@link Class} type provided by {@link #getResourceType()} union them wth externally added resources by
@@ -189,45 +311,41 @@ public abstract class BaseReactiveResourceShutdownStrategy<T> implements Gracefu
    */
   @Override
   public void prepareForShutdown() {
+    if (shutdownDeadline == null) {
+      shutdownDeadline = ShutdownDeadline.afterMillis(gracefulShutdownProperties.getShutdownTimeoutMs());
+    }
 
     Set<T> allResources = getResourcesForShutdown();
+    acquireShutdownScheduler(allResources.size());
+    shutdownStarted.set(true);
 
-    shutdownResources(allResources)
-        .delaySubscription(getStrategyShutdownDelay(), getShutdownScheduler())
+    // Timeouts are sized from the deadline when the shutdown actually starts, i.e. after the delay.
+    // The delay runs on the default timer, the shared scheduler is not capable of time-based scheduling.
+    Mono.defer(() -> shutdownResources(allResources))
+        .delaySubscription(getStrategyShutdownDelay())
         .subscribeOn(getShutdownScheduler())
         .subscribe();
   }
 
+  /**
+   * Remembers the deadline of the whole shutdown and continues as {@link #prepareForShutdown()}.
+   */
+  @Override
+  public void prepareForShutdown(ShutdownDeadline deadline) {
+    this.shutdownDeadline = deadline;
+    prepareForShutdown();
+  }
+
   private Mono<Void> shutdownResources(@NonNull Collection<T> shutdownResources) {
-    return Flux.fromIterable(shutdownResources)
-        // Will start shutting down in parallel
-        .parallel()
-        .runOn(getShutdownScheduler())
-        .flatMap(resource -> {
-          String resourceName = getResourceType().getSimpleName();
-          String resourceDescription = resource.toString();
-
-          return this.shutdownResourceGraceful(resource)
-              // Do not emit complete until resource termination
-              .then(waitTermination(getResourceGracefulTerminationStatus(resource)))
-              .doOnError((throwable) -> log.warn("Error while graceful shutting down {}", resourceName, throwable))
-              .doOnSuccess((e) -> log.info("{} gracefully stopped: {}.", resourceName, resourceDescription))
-              .doOnSubscribe(e -> log.info("Shutting down {} gracefully: '{}'.", resourceName, resourceDescription))
-              .timeout(this.getResourceGracefulShutdownTimeout())
-              // Our flow will try to force shut down in case of error on graceful shutting down any resource
-              .onErrorResume(throwable ->
-                  shutdownResourceForced(resource)
-                      // Do not emit complete until resource termination
-                      .then(waitTermination(getResourceForcedTerminationStatus(resource)))
-                      .doOnSuccess((e) -> log.info("{} force stopped: {}.", resourceName, resourceDescription))
-                      .doOnSubscribe(e -> log.info("Shutting down {} forcefully: '{}'.", resourceName, resourceDescription))
-                      .timeout(this.getResourceForcedShutdownTimeout()))
-              // Our flow will continue in case of error on force shut down any resource
-              .onErrorResume(throwableForce -> {
-                log.error("Error while shutting down {}", resourceName, throwableForce);
-                return Mono.empty();
-              });
-        })
+    Map<T, ResourceShutdownPolicy> policies = getResourceShutdownPolicies(shutdownResources);
+    // Lowest tier first, e.g. producers before their consumers.
+    TreeMap<Integer, List<T>> tiers = new TreeMap<>();
+    for (T resource : shutdownResources) {
+      tiers.computeIfAbsent(policies.get(resource).getTier(), tier -> new ArrayList<>()).add(resource);
+    }
+
+    return Flux.fromIterable(tiers.entrySet())
+        .concatMap(tier -> shutdownTier(tier.getKey(), tier.getValue(), policies, tiers.size() > 1))
         // We interested only when everything is completed, so skip individual signals of shut down resources
         .then()
         // Should fail with error in case all resources is not shut down in time.
@@ -235,7 +353,64 @@ public abstract class BaseReactiveResourceShutdownStrategy<T> implements Gracefu
         .doOnSubscribe((s) -> log.info("Starting shutdown of resources: {}", getResourceType().getSimpleName()))
         .doOnError(throwable -> log.error("Error while shutting down all {}", getResourceType().getSimpleName(), throwable))
         .doOnSuccess((s) -> log.info("All resources stopped"))
-        .doOnTerminate(() -> isShutdownAllowed.set(true));
+        .doOnTerminate(() -> {
+          isShutdownAllowed.set(true);
+          drainCompletion.complete(null);
+          // Running tasks, including this one, are still completed.
+          releaseShutdownSchedulerWhenDone();
+        });
+  }
+
+  private Mono<Void> shutdownTier(int tier, List<T> tierResources, Map<T, ResourceShutdownPolicy> policies, boolean logTier) {
+    return Flux.fromIterable(tierResources)
+        // Will start shutting down in parallel, all the resources of the tier at once
+        .parallel(tierResources.size())
+        .runOn(getShutdownScheduler())
+        .flatMap(resource -> {
+          ResourceShutdownPolicy policy = policies.get(resource);
+          if (policy.isDrainCritical()) {
+            return shutdownResource(resource, policy);
+          }
+          // Neither later tiers nor the green light wait for it.
+          pendingShutdowns.incrementAndGet();
+          shutdownResource(resource, policy)
+              .doFinally(signal -> releaseShutdownSchedulerWhenDone())
+              .subscribe();
+          return Mono.empty();
+        })
+        .then()
+        .doOnSubscribe(s -> {
+          if (logTier) {
+            log.info("Shutting down {} {} resources of tier {}.", tierResources.size(), getResourceType().getSimpleName(), tier);
+          }
+        });
+  }
+
+  private Mono<Void> shutdownResource(T resource, ResourceShutdownPolicy policy) {
+    String resourceName = getResourceType().getSimpleName();
+    String resourceDescription = resource.toString();
+    Duration gracefulShutdownTimeout = this.getResourceGracefulShutdownTimeout(policy);
+
+    return this.shutdownResourceGraceful(resource)
+        // Do not emit complete until resource termination
+        .then(waitTermination(resource, getResourceGracefulTerminationStatus(resource)))
+        .doOnError((throwable) -> log.warn("Error while graceful shutting down {}", resourceName, throwable))
+        .doOnSuccess((e) -> log.info("{} gracefully stopped: {}.", resourceName, resourceDescription))
+        .doOnSubscribe(e -> log.info("Shutting down {} gracefully: '{}'.", resourceName, resourceDescription))
+        .timeout(gracefulShutdownTimeout)
+        // Our flow will try to force shut down in case of error on graceful shutting down any resource
+        .onErrorResume(throwable ->
+            shutdownResourceForced(resource)
+                // Do not emit complete until resource termination
+                .then(waitTermination(resource, getResourceForcedTerminationStatus(resource)))
+                .doOnSuccess((e) -> log.info("{} force stopped: {}.", resourceName, resourceDescription))
+                .doOnSubscribe(e -> log.info("Shutting down {} forcefully: '{}'.", resourceName, resourceDescription))
+                .timeout(this.getResourceForcedShutdownTimeout()))
+        // Our flow will continue in case of error on force shut down any resource
+        .onErrorResume(throwableForce -> {
+          log.error("Error while shutting down {}", resourceName, throwableForce);
+          return Mono.empty();
+        });
   }
 
   /**
@@ -274,6 +449,66 @@ public abstract class BaseReactiveResourceShutdownStrategy<T> implements Gracefu
    */
   protected abstract Mono<Boolean> getResourceForcedTerminationStatus(T resource);
 
+  /**
+   * Push-based counterpart of {@link #getResourceGracefulTerminationStatus} and {@link #getResourceForcedTerminationStatus}, completing at
+   * the moment the resource has terminated.
+   *
+   * <p>Executors can be awaited with {@link #awaitExecutorTermination}.
+   *
+   * @param resource Resource to shut down.
+   * @return {@link Mono} completing on termination, or null, when the termination status has to be polled. The default.
+   */
+  protected Mono<Void> awaitResourceTermination(T resource) {
+    return null;
+  }
+
+  /**
+   * Waits for the termination of an executor, without polling its termination status.
+   *
+   * <ul>
+   *   <li>Terminated executors, e.g. idle ones after a shutdown, complete right away.</li>
+   *   <li>{@link TerminationNotifyingExecutor}s complete from their termination hook, no thread is waiting.</li>
+   *   <li>Other executor services are awaited with {@link ExecutorService#awaitTermination} on the shutdown scheduler.</li>
+   * </ul>
+   *
+   * @param executor {@link Executor} to wait for.
+   * @return {@link Mono} completing on termination, or null for unknown executors, which termination status has to be polled.
+   */
+  protected Mono<Void> awaitExecutorTermination(Executor executor) {
+    ExecutorService executorService = ExecutorShutdownUtils.getExecutorService(executor);
+    if (executorService == null) {
+      return null;
+    }
+
+    return Mono.defer(() -> {
+      if (executorService.isTerminated()) {
+        return Mono.empty();
+      }
+      if (executorService instanceof TerminationNotifyingExecutor) {
+        CompletionStage<Void> termination = ((TerminationNotifyingExecutor) executorService).getTermination();
+        // Not subscribing to the stage itself, so a timeout of the graceful shutdown does not try to cancel it.
+        return Mono.create(sink -> termination.whenComplete((result, throwable) -> sink.success()));
+      }
+
+      // A wait returns right at the termination. It is still sliced, so waits for many executors take turns on a limited number of
+      // threads, and a thread is not kept blocked long after a timeout.
+      long waitSliceMs = Math.max(1, getGracefulShutdownProperties().getResourceCheckIntervalTimeMs());
+      return Mono.fromCallable(() -> executorService.awaitTermination(waitSliceMs, TimeUnit.MILLISECONDS))
+          .subscribeOn(getShutdownScheduler())
+          .repeat()
+          .takeUntil(isTerminated -> isTerminated)
+          .then();
+    });
+  }
+
+  /**
+   * Waits for termination, with {@link #awaitResourceTermination} when supported for the resource, or by polling the termination status.
+   */
+  private Mono<Void> waitTermination(T resource, Mono<Boolean> checkTerminationMono) {
+    Mono<Void> termination = awaitResourceTermination(resource);
+    return termination == null ? pollTermination(checkTerminationMono) : termination;
+  }
+
   /**
    * Will check for termination status in non-blocking way. No thread will be waiting.
    *
@@ -281,7 +516,7 @@ public abstract class BaseReactiveResourceShutdownStrategy<T> implements Gracefu
    * @return {@link Mono} that will complete only when {@link #getResourceGracefulTerminationStatus} for graceful shutdown check
    *         or {@link #getResourceForcedTerminationStatus} for forced shutdown check will return true.
    */
-  private Mono<Void> waitTermination(Mono<Boolean> checkTerminationMono) {
+  private Mono<Void> pollTermination(Mono<Boolean> checkTerminationMono) {
     return checkTerminationMono
         // Use expand as this allows to repeatedly call functions based on previous call result with a breadth-first approach.
         // Call stack will not be polluted.
@@ -300,14 +535,53 @@ public abstract class BaseReactiveResourceShutdownStrategy<T> implements Gracefu
 
   /**
    * Will shut down gracefully added resources during app shutdown.
+   *
+   * <p>Can be called concurrently. The resource is held by a weak reference, and dropped once it has terminated, so short-lived resources
+   * can be added without leaking those.
+   *
    * @param resource Resource to shut down gracefully.
    */
-  public void addResource(T resource) {
-    addedResources.add(resource);
+  public void addResource(@NonNull T resource) {
+    addedResources.register(resource);
+  }
+
+  /**
+   * Same as {@link #addResource}, but returns a handle to remove the resource with, e.g. when its owner shuts it down itself.
+   *
+   * @param resource Resource to shut down gracefully.
+   * @return handle to remove the resource with
+   */
+  public ShutdownResourceRegistry.Registration registerResource(@NonNull T resource) {
+    return addedResources.register(resource);
+  }
+
+  /**
+   * Tells, if an added resource has terminated, so it does not need to be held anymore.
+   *
+   * <p>Has to be cheap, it is called for all added resources every now and then, when resources are added.
+   *
+   * @param resource Resource added with {@link #addResource}.
+   * @return true for terminated resources, false by default
+   */
+  protected boolean isResourceTerminated(T resource) {
+    return false;
   }
 
   @Override
   public boolean canShutdown() {
     return isShutdownAllowed.get();
   }
+
+  @Override
+  public CompletionStage<?> getDrainCompletion() {
+    return drainCompletion;
+  }
+
+  @Override
+  public void applicationTerminating() {
+    // Started shutdowns release the scheduler, when the last of those has finished, incl. the ones of resources not drain-critical.
+    if (!shutdownStarted.get()) {
+      releaseShutdownScheduler();
+    }
+  }
 }
@@ -16,15 +16,17 @@ public class ExecutorServiceGracefulShutdownStrategy extends BaseReactiveResourc
   protected Duration getStrategyShutdownDelay() {
     // In case shutdown was called right after call to endpoint:
     // this will give time for endpoint using ExecutorService to send task if required.
+    int clientsReactionTimeMs = getGracefulShutdownProperties().getClientsReactionTimeMs();
+    int resourceFullShutdownTimeoutMs = getResourceFullShutdownTimeoutMs();
 
     // This is for cases then app is configured incorrectly
-    if (getGracefulShutdownProperties().getClientsReactionTimeMs() > getResourceFullShutdownTimeoutMs()) {
-      return Duration.ofMillis(getResourceFullShutdownTimeoutMs());
+    if (clientsReactionTimeMs > resourceFullShutdownTimeoutMs) {
+      return Duration.ofMillis(resourceFullShutdownTimeoutMs);
     }
 
-    // we give 1/3 of resource shutdown time to allow endpoints called right before client reaction
+    // we give 1/3 of the time remaining after client reaction to allow endpoints called right before client reaction
     // to proceed and successfully submit tasks
-    return Duration.ofMillis(getGracefulShutdownProperties().getClientsReactionTimeMs() + getResourceFullShutdownTimeoutMs() / 3);
+    return Duration.ofMillis(clientsReactionTimeMs + (resourceFullShutdownTimeoutMs - clientsReactionTimeMs) / 3);
   }
 
   public ExecutorServiceGracefulShutdownStrategy(ApplicationContext applicationContext, GracefulShutdownProperties gracefulShutdownProperties) {
@@ -46,6 +48,16 @@ public class ExecutorServiceGracefulShutdownStrategy extends BaseReactiveResourc
     return Mono.fromCallable(resource::isTerminated);
   }
 
+  @Override
+  protected boolean isResourceTerminated(ExecutorService resource) {
+    return resource.isTerminated();
+  }
+
+  @Override
+  protected Mono<Void> awaitResourceTermination(ExecutorService resource) {
+    return awaitExecutorTermination(resource);
+  }
+
   @Override
   protected Mono<Boolean> getResourceForcedTerminationStatus(ExecutorService resource) {
     return getResourceGracefulTerminationStatus(resource);
@@ -2,6 +2,8 @@ package com.transferwise.common.gracefulshutdown.strategies;
 
 import com.github.kagkarlsson.scheduler.Scheduler;
 import com.transferwise.common.gracefulshutdown.GracefulShutdownStrategy;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 
@@ -13,6 +15,8 @@ public class KagkarlssonDbScheduledTaskShutdownStrategy implements GracefulShutd
 
   private volatile boolean canShutDown = true;
 
+  private final CompletableFuture<Void> drainCompletion = new CompletableFuture<>();
+
   @Override
   public void prepareForShutdown() {
     log.info("Attempting to shut down Kagkarlsson scheduler");
@@ -28,6 +32,7 @@ public class KagkarlssonDbScheduledTaskShutdownStrategy implements GracefulShutd
         log.error("Failed to shutdown Kagkarlsson scheduler.", t);
       } finally {
         canShutDown = true;
+        drainCompletion.complete(null);
       }
     }).start();
   }
@@ -36,4 +41,9 @@ public class KagkarlssonDbScheduledTaskShutdownStrategy implements GracefulShutd
   public boolean canShutdown() {
     return canShutDown;
   }
+
+  @Override
+  public CompletionStage<?> getDrainCompletion() {
+    return drainCompletion;
+  }
 }
@@ -0,0 +1,60 @@
+package com.transferwise.common.gracefulshutdown.strategies;
+
+import com.transferwise.common.gracefulshutdown.GracefulShutdownPolicy;
+import com.transferwise.common.gracefulshutdown.config.GracefulShutdownProperties.ResourcePolicyProperties;
+import lombok.Value;
+
+/**
+ * Resolved {@link GracefulShutdownPolicy} of a resource.
+ */
+@Value
+public class ResourceShutdownPolicy {
+
+  public static final ResourceShutdownPolicy DEFAULT = new ResourceShutdownPolicy(0, -1, -1, true);
+
+  int tier;
+
+  /**
+   * Negative, when not limited.
+   */
+  long maxGracefulTimeMs;
+
+  /**
+   * Negative, when the default share of the strategy is used.
+   */
+  double gracefulTimeShare;
+
+  boolean drainCritical;
+
+  /**
+   * Resolves the policy from the annotation of a bean, overridden by the properties set for its name.
+   *
+   * @param annotation annotation of the bean, can be null
+   * @param properties properties of the bean, can be null
+   */
+  public static ResourceShutdownPolicy of(GracefulShutdownPolicy annotation, ResourcePolicyProperties properties) {
+    if (annotation == null && properties == null) {
+      return DEFAULT;
+    }
+
+    int tier = annotation == null ? DEFAULT.tier : annotation.tier();
+    long maxGracefulTimeMs = annotation == null ? DEFAULT.maxGracefulTimeMs : annotation.maxGracefulTimeMs();
+    double gracefulTimeShare = annotation == null ? DEFAULT.gracefulTimeShare : annotation.gracefulTimeShare();
+    boolean drainCritical = annotation == null ? DEFAULT.drainCritical : annotation.drainCritical();
+    if (properties != null) {
+      if (properties.getTier() != null) {
+        tier = properties.getTier();
+      }
+      if (properties.getMaxGracefulTimeMs() != null) {
+        maxGracefulTimeMs = properties.getMaxGracefulTimeMs();
+      }
+      if (properties.getGracefulTimeShare() != null) {
+        gracefulTimeShare = properties.getGracefulTimeShare();
+      }
+      if (properties.getDrainCritical() != null) {
+        drainCritical = properties.getDrainCritical();
+      }
+    }
+    return new ResourceShutdownPolicy(tier, maxGracefulTimeMs, gracefulTimeShare, drainCritical);
+  }
+}
@@ -0,0 +1,106 @@
+package com.transferwise.common.gracefulshutdown.strategies;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.transferwise.common.gracefulshutdown.utils.VirtualThreadsUtils;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * The scheduler shared by all resource shutdown strategies of the JVM.
+ *
+ * <p>It is only needed during the last seconds of the process, so it is created by the first strategy acquiring it, and disposed, when
+ * the last strategy has released it, i.e. when all resource strategies have finished their shutdowns.
+ *
+ * <p>The scheduler wraps an executor of our own, so it can be disposed gracefully, with {@link ExecutorService#shutdown()}, also with
+ * Reactor versions not having `Scheduler.disposeGracefully()`.
+ */
+final class SharedShutdownScheduler {
+
+  private static final String THREAD_NAME_PREFIX = "ShutdownWorker-";
+
+  private static final int MAX_PLATFORM_THREADS = 100;
+
+  private static final int MAX_QUEUED_TASKS = 100_000;
+
+  private static final long THREAD_KEEP_ALIVE_SECONDS = 10;
+
+  /**
+   * The instance used by all resource strategies.
+   */
+  static final SharedShutdownScheduler INSTANCE = new SharedShutdownScheduler();
+
+  private ExecutorService executor;
+
+  /**
+   * Null, when running on virtual threads.
+   */
+  private ThreadPoolExecutor platformThreadsPool;
+
+  private int parallelismInUse;
+
+  private Scheduler scheduler;
+
+  private int users;
+
+  SharedShutdownScheduler() {
+  }
+
+  /**
+   * Returns the shared scheduler, creates it, when not in use yet.
+   *
+   * <p>Every call has to be followed by a {@link #release()}.
+   *
+   * @param parallelism    how many resources the caller shuts down in parallel, a pool of platform threads is sized to the sum of those
+   * @param virtualThreads run the tasks on virtual threads, when supported, so blocking shutdown calls do not need a sized pool
+   */
+  synchronized Scheduler acquire(int parallelism, boolean virtualThreads) {
+    if (scheduler == null) {
+      if (virtualThreads && VirtualThreadsUtils.isSupported()) {
+        executor = VirtualThreadsUtils.newThreadPerTaskExecutor(THREAD_NAME_PREFIX, true);
+      } else {
+        // Threads are started only on demand.
+        platformThreadsPool = new ThreadPoolExecutor(1, 1, THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(MAX_QUEUED_TASKS), new ThreadFactoryBuilder().setDaemon(true).setNameFormat(THREAD_NAME_PREFIX + "%d").build());
+        platformThreadsPool.allowCoreThreadTimeOut(true);
+        executor = platformThreadsPool;
+      }
+      scheduler = Schedulers.fromExecutorService(executor, "ShutdownWorker");
+    }
+    users++;
+    parallelismInUse += Math.max(1, parallelism);
+    if (platformThreadsPool != null) {
+      int threads = Math.min(parallelismInUse, MAX_PLATFORM_THREADS);
+      if (threads > platformThreadsPool.getMaximumPoolSize()) {
+        // Maximum first, the core size can not exceed it.
+        platformThreadsPool.setMaximumPoolSize(threads);
+        platformThreadsPool.setCorePoolSize(threads);
+      }
+    }
+    return scheduler;
+  }
+
+  /**
+   * Shuts the executor down without interrupting running tasks, when nobody uses it anymore.
+   */
+  synchronized void release() {
+    if (users == 0) {
+      return;
+    }
+    users--;
+    if (users == 0) {
+      executor.shutdown();
+      executor = null;
+      platformThreadsPool = null;
+      scheduler = null;
+      parallelismInUse = 0;
+    }
+  }
+
+  synchronized boolean isActive() {
+    return scheduler != null;
+  }
+}
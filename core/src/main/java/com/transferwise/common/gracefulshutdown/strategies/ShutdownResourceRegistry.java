@@ -0,0 +1,134 @@
+package com.transferwise.common.gracefulshutdown.strategies;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Resources added programmatically to a {@link BaseReactiveResourceShutdownStrategy}, e.g. executors created per tenant or per batch run.
+ *
+ * <p>Resources are held by weak references, so registering those does not keep them in memory. An executor still having threads is
+ * reachable from those, so it is not collected before it has nothing left to wait for.
+ *
+ * <p>Registration appends to a lock-free queue. Unregistered, collected and terminated resources are dropped by a sweep, which runs once
+ * the registrations since the previous sweep outnumber the entries it left, so the cost of sweeps is amortized over registrations, and the
+ * queue holds at most about twice the live resources.
+ */
+public final class ShutdownResourceRegistry<T> {
+
+  private static final int DEFAULT_MIN_SWEEP_INTERVAL = 1024;
+
+  /**
+   * A registered resource.
+   */
+  public interface Registration {
+
+    /**
+     * Removes the resource from the registry, e.g. when it was shut down by its owner. Can be called multiple times.
+     */
+    void unregister();
+  }
+
+  private final ConcurrentLinkedQueue<Entry<T>> entries = new ConcurrentLinkedQueue<>();
+
+  private final Predicate<T> isTerminated;
+
+  private final int minSweepInterval;
+
+  private final AtomicLong registrationsSinceSweep = new AtomicLong();
+
+  private final AtomicBoolean sweeping = new AtomicBoolean();
+
+  private volatile long entriesAfterSweep;
+
+  /**
+   * Creates a registry.
+   *
+   * @param isTerminated tells, if a resource has terminated, and can be dropped
+   */
+  public ShutdownResourceRegistry(Predicate<T> isTerminated) {
+    this(isTerminated, DEFAULT_MIN_SWEEP_INTERVAL);
+  }
+
+  ShutdownResourceRegistry(Predicate<T> isTerminated, int minSweepInterval) {
+    this.isTerminated = isTerminated;
+    this.minSweepInterval = minSweepInterval;
+  }
+
+  /**
+   * Registers a resource.
+   *
+   * @return handle to unregister the resource with
+   */
+  public Registration register(T resource) {
+    var entry = new Entry<>(resource);
+    entries.add(entry);
+    if (registrationsSinceSweep.incrementAndGet() >= Math.max(minSweepInterval, entriesAfterSweep)) {
+      sweep();
+    }
+    return entry;
+  }
+
+  /**
+   * Returns the resources still registered, and not terminated or collected.
+   */
+  public List<T> getResources() {
+    var result = new ArrayList<T>();
+    for (Entry<T> entry : entries) {
+      T resource = entry.get();
+      if (resource != null && !isTerminated.test(resource)) {
+        result.add(resource);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the number of entries held, including the ones not swept yet. Walks all the entries.
+   */
+  public int getEntriesCount() {
+    return entries.size();
+  }
+
+  /**
+   * Drops unregistered, collected and terminated resources.
+   */
+  void sweep() {
+    if (!sweeping.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      registrationsSinceSweep.set(0);
+      long kept = 0;
+      for (Iterator<Entry<T>> iterator = entries.iterator(); iterator.hasNext(); ) {
+        T resource = iterator.next().get();
+        if (resource == null || isTerminated.test(resource)) {
+          iterator.remove();
+        } else {
+          kept++;
+        }
+      }
+      entriesAfterSweep = kept;
+    } finally {
+      sweeping.set(false);
+    }
+  }
+
+  private static final class Entry<T> extends WeakReference<T> implements Registration {
+
+    Entry(T resource) {
+      super(resource);
+    }
+
+    @Override
+    public void unregister() {
+      // Lets the resource go right away, the entry itself is dropped by the next sweep.
+      clear();
+    }
+  }
+}
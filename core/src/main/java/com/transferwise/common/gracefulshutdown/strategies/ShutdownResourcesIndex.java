@@ -0,0 +1,169 @@
+package com.transferwise.common.gracefulshutdown.strategies;
+
+import com.transferwise.common.gracefulshutdown.GracefulShutdownIgnore;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.function.BiConsumer;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.NoSuchBeanDefinitionException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.core.Ordered;
+import org.springframework.core.PriorityOrdered;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.scheduling.TaskScheduler;
+
+/**
+ * Records resources shut down by {@link BaseReactiveResourceShutdownStrategy}s, i.e. executor services and task schedulers, as beans are
+ * created.
+ *
+ * <p>This way, the shutdown does not scan the whole application context, at the moment time matters the most, and does not instantiate
+ * lazy beans, which were never used.
+ *
+ * <p>Only singletons are recorded. Singletons registered directly, without a bean definition, and beans created before this post processor
+ * was registered, are not seen by it. Those are looked up from the bean factory on shutdown, among the singletons already created, so
+ * nothing is instantiated for it either.
+ */
+@Slf4j
+public class ShutdownResourcesIndex implements BeanPostProcessor, BeanFactoryAware, PriorityOrdered {
+
+  private static final List<Class<?>> INDEXED_TYPES = List.of(ExecutorService.class, TaskScheduler.class);
+
+  private final List<Entry> entries = new CopyOnWriteArrayList<>();
+
+  private ConfigurableListableBeanFactory beanFactory;
+
+  @Override
+  public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
+    if (beanFactory instanceof ConfigurableListableBeanFactory) {
+      this.beanFactory = (ConfigurableListableBeanFactory) beanFactory;
+    }
+  }
+
+  @Override
+  public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+    if (isIndexedType(bean) && isSingleton(beanName)) {
+      entries.add(new Entry(beanName, bean, isIgnored(bean, beanName)));
+    }
+    return bean;
+  }
+
+  /**
+   * Returns the resources of given type, without the ones annotated with {@link GracefulShutdownIgnore}.
+   *
+   * <p>Besides the recorded ones, singletons of the type already created, but missed by the index, are included.
+   */
+  public <T> Set<T> getResources(Class<T> type) {
+    var result = new HashSet<T>();
+    for (Entry entry : entries) {
+      if (!entry.isIgnored() && type.isInstance(entry.getBean())) {
+        result.add(type.cast(entry.getBean()));
+      }
+    }
+    forEachMissedSingleton(type, (beanName, bean) -> {
+      if (!isIgnored(bean, beanName)) {
+        log.info("Bean '{}' was not indexed, as it was registered directly or created early, found it in the bean factory.", beanName);
+        result.add(type.cast(bean));
+      }
+    });
+    return result;
+  }
+
+  /**
+   * Returns the bean names of the resources of given type, by the resources, including the singletons missed by the index.
+   */
+  public Map<Object, String> getBeanNames(Class<?> type) {
+    var result = new IdentityHashMap<Object, String>();
+    for (Entry entry : entries) {
+      if (type.isInstance(entry.getBean())) {
+        result.put(entry.getBean(), entry.getBeanName());
+      }
+    }
+    forEachMissedSingleton(type, (beanName, bean) -> result.put(bean, beanName));
+    return result;
+  }
+
+  /**
+   * Describes the recorded resources, for verification through the actuator endpoint.
+   */
+  public List<Map<String, Object>> describe() {
+    var result = new ArrayList<Map<String, Object>>();
+    for (Entry entry : entries) {
+      var description = new LinkedHashMap<String, Object>();
+      description.put("beanName", entry.getBeanName());
+      description.put("type", entry.getBean().getClass().getName());
+      description.put("ignored", entry.isIgnored());
+      result.add(description);
+    }
+    return result;
+  }
+
+  @Override
+  public int getOrder() {
+    return Ordered.LOWEST_PRECEDENCE;
+  }
+
+  /**
+   * Singletons of the type, which are already created, but not recorded. Nothing is instantiated, neither lazy beans nor factory beans.
+   */
+  private void forEachMissedSingleton(Class<?> type, BiConsumer<String, Object> consumer) {
+    if (beanFactory == null) {
+      return;
+    }
+    Set<Object> indexed = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (Entry entry : entries) {
+      indexed.add(entry.getBean());
+    }
+    for (String beanName : beanFactory.getBeanNamesForType(type, false, false)) {
+      if (beanFactory.containsSingleton(beanName)) {
+        Object bean = beanFactory.getBean(beanName);
+        if (type.isInstance(bean) && !indexed.contains(bean)) {
+          consumer.accept(beanName, bean);
+        }
+      }
+    }
+  }
+
+  private static boolean isIndexedType(Object bean) {
+    for (Class<?> type : INDEXED_TYPES) {
+      if (type.isInstance(bean)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean isSingleton(String beanName) {
+    // Inner beans do not have their own definitions, and are not found by a context scan either.
+    return beanFactory != null && beanFactory.containsBeanDefinition(beanName) && beanFactory.getMergedBeanDefinition(beanName).isSingleton();
+  }
+
+  private boolean isIgnored(Object bean, String beanName) {
+    try {
+      // The same lookup as `getBeansWithAnnotation` of a context scan, e.g. also finding the annotation on `@Bean` methods.
+      return beanFactory.findAnnotationOnBean(beanName, GracefulShutdownIgnore.class) != null;
+    } catch (NoSuchBeanDefinitionException e) {
+      return AnnotationUtils.findAnnotation(bean.getClass(), GracefulShutdownIgnore.class) != null;
+    }
+  }
+
+  @Value
+  static class Entry {
+
+    String beanName;
+    Object bean;
+    boolean ignored;
+  }
+}
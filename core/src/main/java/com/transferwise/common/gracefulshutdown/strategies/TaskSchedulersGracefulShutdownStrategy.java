@@ -8,6 +8,7 @@ import java.lang.reflect.Method;
 import java.time.Duration;
 import java.util.Set;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import lombok.NonNull;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
@@ -102,6 +103,29 @@ public class TaskSchedulersGracefulShutdownStrategy extends BaseReactiveResource
     });
   }
 
+  @Override
+  protected boolean isResourceTerminated(TaskScheduler resource) {
+    if (resource instanceof Executor) {
+      try {
+        ExecutorService executorService = ExecutorShutdownUtils.getExecutorService((Executor) resource);
+        return executorService != null && executorService.isTerminated();
+      } catch (IllegalStateException e) {
+        // Not initialized yet.
+        return false;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  protected Mono<Void> awaitResourceTermination(TaskScheduler resource) {
+    if (resource instanceof Executor) {
+      return awaitExecutorTermination((Executor) resource);
+    }
+    // TaskSchedulerRouter creates its local executor lazily, and unknown schedulers can only be polled.
+    return null;
+  }
+
   @Override
   protected Mono<Boolean> getResourceForcedTerminationStatus(TaskScheduler resource) {
     return getResourceGracefulTerminationStatus(resource);
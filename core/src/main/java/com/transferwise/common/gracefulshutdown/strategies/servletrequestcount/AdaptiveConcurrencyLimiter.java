@@ -0,0 +1,145 @@
+package com.transferwise.common.gracefulshutdown.strategies.servletrequestcount;
+
+import com.transferwise.common.gracefulshutdown.config.RequestCountStrategyProperties.ConcurrencyLimitProperties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Gradient based concurrency limit, adapting to the observed latency of requests.
+ *
+ * <p>Latencies are averaged per window. The baseline latency is a slow moving average of the window averages. The limit is multiplied by
+ * the gradient, the baseline times the tolerance divided by the window average, capped between 0.5 and 1, and a queue of the square root
+ * of the limit is added, so the limit keeps probing upwards while the latency stays around its baseline, and shrinks once requests are
+ * queueing up. The limit does not grow, while less than half of it is used.
+ *
+ * <p>Samples are summed into adders, and only the thread closing a window updates the limit, so requests do not contend on a lock.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+  private static final double MIN_GRADIENT = 0.5;
+
+  /**
+   * How many windows the baseline latency is averaged over.
+   */
+  private static final double BASELINE_WINDOWS = 600;
+
+  /**
+   * The baseline is pulled down faster, when it is this many times above the window average, e.g. after a long overload.
+   */
+  private static final double BASELINE_DRIFT_RATIO = 2;
+
+  private static final double BASELINE_DECAY = 0.95;
+
+  private static final int MIN_WINDOW_SAMPLES = 10;
+
+  private final ConcurrencyLimitProperties properties;
+
+  private final long windowNanos;
+
+  private final LongAdder windowLatencyNanos = new LongAdder();
+
+  private final LongAdder windowSamples = new LongAdder();
+
+  private final AtomicLong windowStartNanos;
+
+  private volatile long windowMaxInFlight;
+
+  private volatile int limit;
+
+  private volatile double latencyNanos;
+
+  private volatile double baselineLatencyNanos;
+
+  private volatile boolean frozen;
+
+  private double estimatedLimit;
+
+  public AdaptiveConcurrencyLimiter(ConcurrencyLimitProperties properties) {
+    this.properties = properties;
+    this.windowNanos = TimeUnit.MILLISECONDS.toNanos(properties.getWindowMs());
+    this.windowStartNanos = new AtomicLong(System.nanoTime());
+    this.estimatedLimit = Math.max(properties.getMinLimit(), Math.min(properties.getMaxLimit(), properties.getInitialLimit()));
+    this.limit = (int) estimatedLimit;
+  }
+
+  /**
+   * Tells if a request can be accepted, given the number of requests already in flight.
+   *
+   * <p>The limit is soft, so an approximate count, e.g. a sampled one, is enough.
+   */
+  public boolean tryAcquire(long inFlight) {
+    if (inFlight >= limit) {
+      return false;
+    }
+    // Mostly a plain read, the maximum changes rarely within a window.
+    if (inFlight >= windowMaxInFlight) {
+      windowMaxInFlight = inFlight + 1;
+    }
+    return true;
+  }
+
+  /**
+   * Records the latency of a finished request.
+   */
+  public void onSample(long nowNanos, long latencyNanos) {
+    windowLatencyNanos.add(latencyNanos);
+    windowSamples.increment();
+    long start = windowStartNanos.get();
+    if (nowNanos - start >= windowNanos && windowStartNanos.compareAndSet(start, nowNanos)) {
+      updateLimit();
+    }
+  }
+
+  /**
+   * Stops adapting the limit, e.g. when traffic is going away because of a shutdown and latencies do not tell anything anymore.
+   */
+  public void freeze() {
+    frozen = true;
+  }
+
+  public int getLimit() {
+    return limit;
+  }
+
+  /**
+   * Returns the average latency of the last window with enough samples.
+   */
+  public double getLatencyNanos() {
+    return latencyNanos;
+  }
+
+  public double getBaselineLatencyNanos() {
+    return baselineLatencyNanos;
+  }
+
+  private void updateLimit() {
+    long samples = windowSamples.sumThenReset();
+    long latencySum = windowLatencyNanos.sumThenReset();
+    long maxInFlight = windowMaxInFlight;
+    windowMaxInFlight = 0;
+    if (frozen || samples < MIN_WINDOW_SAMPLES) {
+      return;
+    }
+
+    double latency = (double) latencySum / samples;
+    double baseline = baselineLatencyNanos;
+    baseline = baseline == 0 ? latency : baseline + (latency - baseline) / BASELINE_WINDOWS;
+    if (baseline / latency > BASELINE_DRIFT_RATIO) {
+      baseline *= BASELINE_DECAY;
+    }
+
+    double gradient = Math.max(MIN_GRADIENT, Math.min(1, properties.getLatencyTolerance() * baseline / latency));
+    double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+    if (maxInFlight < estimatedLimit / 2) {
+      // Not using the limit, so the latency does not tell if a higher one would be fine.
+      newLimit = Math.min(newLimit, estimatedLimit);
+    }
+    newLimit = estimatedLimit * (1 - properties.getSmoothing()) + newLimit * properties.getSmoothing();
+    estimatedLimit = Math.max(properties.getMinLimit(), Math.min(properties.getMaxLimit(), newLimit));
+
+    latencyNanos = latency;
+    baselineLatencyNanos = baseline;
+    limit = (int) estimatedLimit;
+  }
+}
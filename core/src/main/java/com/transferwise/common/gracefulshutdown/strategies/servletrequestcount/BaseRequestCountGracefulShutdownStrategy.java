@@ -1,87 +1,766 @@
 package com.transferwise.common.gracefulshutdown.strategies.servletrequestcount;
 
 import com.transferwise.common.gracefulshutdown.GracefulShutdownStrategy;
+import com.transferwise.common.gracefulshutdown.TrafficObservingStrategy;
 import com.transferwise.common.gracefulshutdown.config.RequestCountStrategyProperties;
 import com.transferwise.common.gracefulshutdown.strategies.servletrequestcount.servletwrappers.HttpServletRequestWrapper;
 import com.transferwise.common.gracefulshutdown.strategies.servletrequestcount.servletwrappers.HttpServletResponseWrapper;
+import com.transferwise.common.gracefulshutdown.utils.DrainTimeEstimator;
+import com.transferwise.common.gracefulshutdown.utils.StripedInFlightCounter;
+import com.transferwise.common.gracefulshutdown.utils.UriPatternMatcher;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.Callable;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
 
 @Slf4j
-public abstract class BaseRequestCountGracefulShutdownStrategy implements GracefulShutdownStrategy {
+public abstract class BaseRequestCountGracefulShutdownStrategy implements GracefulShutdownStrategy, TrafficObservingStrategy, InitializingBean {
 
-  private static final String ALREADY_FILTERED_KEY = BaseRequestCountGracefulShutdownStrategy.class.getName() + ".FILTERED";
+  protected static final int SERVICE_UNAVAILABLE = 503;
 
-  private static final int SERVICE_UNAVAILABLE = 503;
-  protected static final AtomicLong currentRequestsCount = new AtomicLong();
+  protected static final String CONNECTION_HEADER = "Connection";
+
+  protected static final String CONNECTION_CLOSE = "close";
+
+  protected static final String RETRY_AFTER_HEADER = "Retry-After";
+
+  /**
+   * The request has to be rejected, {@link #afterRequest(int)} must not be called.
+   */
+  protected static final int TICKET_REJECTED = -1;
+
+  /**
+   * The request is let through without counting.
+   */
+  protected static final int TICKET_NOT_COUNTED = 0;
+
+  /**
+   * The request is counted.
+   */
+  protected static final int TICKET_COUNTED = 1;
+
+  /**
+   * The request is counted, but it has arrived after the drain has started. See {@link #logLateRequest(String, String)}.
+   *
+   * <p>Use {@link #isLate(int)} to check for it, as counted tickets also carry the in-flight registry slot in their upper bits.
+   */
+  protected static final int TICKET_COUNTED_LATE = 2;
+
+  private static final int MAX_ACCOUNTED_KEYS = 1000;
+  private static final int SUMMARY_TOP_KEYS = 5;
+
+  private static final int TICKET_KIND_BITS = 2;
+  private static final int TICKET_KIND_MASK = (1 << TICKET_KIND_BITS) - 1;
+
+  /**
+   * Set on requests gone async, their ASYNC and ERROR re-dispatches are let through, as those are still tracked by an `AsyncListener`.
+   */
+  protected static final String ASYNC_TRACKED_ATTRIBUTE = BaseRequestCountGracefulShutdownStrategy.class.getName() + ".asyncTracked";
+
+  private static final String DISPATCHER_TYPE_ASYNC = "ASYNC";
+  private static final String DISPATCHER_TYPE_ERROR = "ERROR";
+  private static final Set<String> DISPATCHER_TYPES = Set.of("FORWARD", "INCLUDE", "REQUEST", DISPATCHER_TYPE_ASYNC, DISPATCHER_TYPE_ERROR);
+
+  /**
+   * Request attribute, where Spring MVC puts the URI template of the handler, e.g. `/users/{id}`.
+   */
+  protected static final String BEST_MATCHING_PATTERN_ATTRIBUTE = "org.springframework.web.servlet.HandlerMapping.bestMatchingPattern";
+
+  /**
+   * Request attribute, where Spring MVC puts the handler, e.g. a `HandlerMethod`.
+   */
+  protected static final String BEST_MATCHING_HANDLER_ATTRIBUTE = "org.springframework.web.servlet.HandlerMapping.bestMatchingHandler";
+
+  /**
+   * Requests in flight of this strategy instance, i.e. of its application context.
+   */
+  protected final StripedInFlightCounter inFlightRequests = new StripedInFlightCounter();
+
+  /**
+   * Requests arrived after the drain has been started by the first {@link #canShutdown()} call.
+   */
+  private final LongAdder lateRequestsCount = new LongAdder();
+
+  private final LongAdder rejectedRequestsCount = new LongAdder();
+
+  private final LongAdder limitedRequestsCount = new LongAdder();
+
+  private final RequestsAccounting lateRequests = new RequestsAccounting(MAX_ACCOUNTED_KEYS);
+
+  private final RequestsAccounting rejectedRequests = new RequestsAccounting(MAX_ACCOUNTED_KEYS);
+
+  private long lastSummaryNanos;
+
+  private long lastSummaryLateRequestsCount;
+
+  private long lastSummaryRejectedRequestsCount;
 
   private volatile boolean stopAcceptingRequests = false;
 
-  private volatile boolean stopCounting;
+  private volatile boolean drainStarted;
+
+  private volatile boolean shutdownPrepared;
+
+  private volatile long lastRequestArrivalNanos;
+
+  private final CompletableFuture<Void> drainCompletion = new CompletableFuture<>();
+
+  private final DrainTimeEstimator drainTimeEstimator = new DrainTimeEstimator();
+
+  private long preparedNanos;
+
+  private long preparedStartedCount;
+
+  private long preparedInFlightCount;
+
+  /**
+   * Detects re-entrance on forwards and includes, without touching the request attributes map.
+   *
+   * <p>Values are only ever set to the shared boolean constants, so there is no allocation after the first request on a thread.
+   */
+  private final ThreadLocal<Boolean> filtering = ThreadLocal.withInitial(() -> Boolean.FALSE);
 
   @Autowired
   private RequestCountStrategyProperties requestCountStrategyProperties;
 
+  /**
+   * Compiled from {@link RequestCountStrategyProperties#getIgnoredUris()} once, so a request costs a single pass over its URI.
+   */
+  private volatile UriPatternMatcher ignoredUrisMatcher;
+
+  /**
+   * Upper cased from the properties once, as request methods and dispatcher types are, so configured values match in any case.
+   */
+  private Set<String> ignoredMethods = Set.of();
+
+  private Set<String> ignoredDispatcherTypes = Set.of();
+
+  /**
+   * Null, when not enabled by {@link RequestCountStrategyProperties.InFlightRegistryProperties#isEnabled()}.
+   */
+  private InFlightRequestRegistry inFlightRequestRegistry;
+
+  /**
+   * Null, when not enabled by {@link RequestCountStrategyProperties.ConcurrencyLimitProperties#isEnabled()}.
+   */
+  private AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+  /**
+   * Null, when not enabled by {@link RequestCountStrategyProperties.WarmUpProperties#isEnabled()}.
+   */
+  private WarmUpAdmission warmUpAdmission;
+
+  /**
+   * Null, when there is no in-flight registry, as requests can only be cut off, when we know those.
+   */
+  private DrainTimeLimiter drainTimeLimiter;
+
+  private long lastReportNanos;
+
+  private boolean drainConnections;
+
+  private String retryAfter;
+
+  @Override
+  public void afterPropertiesSet() {
+    getIgnoredUrisMatcher();
+    ignoredMethods = toUpperCase(requestCountStrategyProperties.getIgnoredMethods());
+    ignoredDispatcherTypes = toUpperCase(requestCountStrategyProperties.getIgnoredDispatcherTypes());
+    for (var dispatcherType : ignoredDispatcherTypes) {
+      if (!DISPATCHER_TYPES.contains(dispatcherType)) {
+        throw new IllegalArgumentException("Unknown dispatcher type '" + dispatcherType + "' in `ignored-dispatcher-types`, known ones are "
+            + DISPATCHER_TYPES + ".");
+      }
+    }
+    drainConnections = requestCountStrategyProperties.isDrainConnections();
+    if (requestCountStrategyProperties.getRetryAfterSeconds() > 0) {
+      retryAfter = String.valueOf(requestCountStrategyProperties.getRetryAfterSeconds());
+    }
+    if (requestCountStrategyProperties.getWarmUp().isEnabled()) {
+      warmUpAdmission = new WarmUpAdmission(requestCountStrategyProperties.getWarmUp());
+    }
+    if (requestCountStrategyProperties.getConcurrencyLimit().isEnabled()) {
+      concurrencyLimiter = new AdaptiveConcurrencyLimiter(requestCountStrategyProperties.getConcurrencyLimit());
+    }
+    var registryProperties = requestCountStrategyProperties.getInFlightRegistry();
+    // Requests can only be cut off, when we know those.
+    if (registryProperties.isEnabled() || !requestCountStrategyProperties.getDrainTimeLimits().isEmpty()) {
+      inFlightRequestRegistry = new InFlightRequestRegistry(registryProperties.getCapacity());
+      drainTimeLimiter = new DrainTimeLimiter(requestCountStrategyProperties.getDrainTimeLimits(), inFlightRequestRegistry,
+          this::resolveHandler, this::cutOff);
+    }
+  }
+
+  private static Set<String> toUpperCase(Set<String> values) {
+    return values.stream().map(value -> value.trim().toUpperCase(Locale.ROOT)).collect(Collectors.toUnmodifiableSet());
+  }
+
+  protected RequestCountStrategyProperties getRequestCountStrategyProperties() {
+    return requestCountStrategyProperties;
+  }
+
   public long getCurrentRequestsCount() {
-    return currentRequestsCount.get();
+    return inFlightRequests.getInFlight();
+  }
+
+  /**
+   * Returns the number of counted requests, which arrived after the first {@link #canShutdown()} call.
+   */
+  public long getLateRequestsCount() {
+    return lateRequestsCount.sum();
+  }
+
+  /**
+   * Returns the number of requests rejected after the clients reaction time.
+   */
+  public long getRejectedRequestsCount() {
+    return rejectedRequestsCount.sum();
+  }
+
+  /**
+   * Returns the number of requests cut off, because those kept the drain waiting for longer than their limit.
+   */
+  public long getCutOffRequestsCount() {
+    return drainTimeLimiter == null ? 0 : drainTimeLimiter.getCutOffRequestsCount();
+  }
+
+  /**
+   * Returns the number of requests shed by the warm-up admission ramp.
+   */
+  public long getShedRequestsCount() {
+    return warmUpAdmission == null ? 0 : warmUpAdmission.getShedRequestsCount();
+  }
+
+  /**
+   * Returns the number of requests rejected by the adaptive concurrency limit.
+   */
+  public long getLimitedRequestsCount() {
+    return limitedRequestsCount.sum();
+  }
+
+  /**
+   * Returns the adaptive concurrency limiter.
+   *
+   * @return null, when not enabled
+   */
+  public AdaptiveConcurrencyLimiter getConcurrencyLimiter() {
+    return concurrencyLimiter;
+  }
+
+  @Override
+  public void applicationStarted() {
+    if (warmUpAdmission != null) {
+      warmUpAdmission.start();
+    }
+  }
+
+  @Override
+  public void prepareForShutdown() {
+    // Clients are going away anyway, and requests shed now would look like rejections of the shutdown.
+    if (warmUpAdmission != null) {
+      warmUpAdmission.finish();
+    }
+    if (concurrencyLimiter != null) {
+      // Keeps limiting with the last steady state limit, until the shutdown starts rejecting everything.
+      concurrencyLimiter.freeze();
+    }
+    preparedNanos = System.nanoTime();
+    preparedStartedCount = inFlightRequests.getStarted();
+    preparedInFlightCount = inFlightRequests.getInFlight();
+    lastRequestArrivalNanos = preparedNanos;
+    shutdownPrepared = true;
+  }
+
+  @Override
+  public long getLastRequestArrivalNanos() {
+    return lastRequestArrivalNanos;
   }
 
   @Override
   public void clientReactionTimePassed() {
     stopAcceptingRequests = true;
+    long now = System.nanoTime();
+    long inFlight = inFlightRequests.getInFlight();
+    estimateMeanRequestDuration(now, inFlight);
+    drainTimeEstimator.addSample(now, inFlight);
+    if (!signalIfDrained(inFlight) && drainTimeLimiter != null) {
+      drainTimeLimiter.start();
+    }
+  }
+
+  /**
+   * Little's law over the clients reaction window, the mean duration is the mean number of requests in flight divided by the arrival rate.
+   *
+   * <p>Requests are still arriving in the window, so it tells how long requests of this application usually take, without timing any of
+   * those.
+   */
+  private void estimateMeanRequestDuration(long now, long inFlight) {
+    long arrivals = inFlightRequests.getStarted() - preparedStartedCount;
+    long windowNanos = now - preparedNanos;
+    if (preparedNanos == 0 || arrivals <= 0 || windowNanos <= 0) {
+      return;
+    }
+    double meanInFlight = (preparedInFlightCount + inFlight) / 2.0;
+    drainTimeEstimator.setMeanDurationNanos(meanInFlight * windowNanos / arrivals);
   }
 
   @Override
   public boolean canShutdown() {
-    stopCounting = true;
-    return currentRequestsCount.get() == 0;
+    drainStarted = true;
+    long inFlight = inFlightRequests.getInFlight();
+    if (stopAcceptingRequests) {
+      // Before that, arrivals keep the count up, and it does not tell anything about the decay.
+      drainTimeEstimator.addSample(System.nanoTime(), inFlight);
+    }
+    boolean result = signalIfDrained(inFlight);
+    if (!result && inFlightRequestRegistry != null) {
+      logInFlightRequestsReport();
+    }
+    logRequestsSummary(false);
+    return result;
   }
 
-  protected void doFilterInternal0(HttpServletRequestWrapper request, HttpServletResponseWrapper response, Callable<Void> chainCaller)
-      throws Exception {
+  /**
+   * Estimates the remaining drain time from the decay of in-flight requests sampled by {@link #canShutdown()} checks, and from the mean
+   * request duration observed in the clients reaction window.
+   */
+  @Override
+  public long getEstimatedDrainTimeMs() {
+    long nanos = drainTimeEstimator.estimateRemainingNanos();
+    if (nanos == DrainTimeEstimator.NOT_DRAINING) {
+      return Long.MAX_VALUE;
+    }
+    return nanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(nanos);
+  }
 
-    String requestUri = request.getRequestUri();
+  @Override
+  public void applicationTerminating() {
+    if (drainTimeLimiter != null) {
+      drainTimeLimiter.stop();
+    }
+    logRequestsSummary(true);
+  }
+
+  /**
+   * Finishes a request over its drain time limit, e.g. completes its async processing with 503, or interrupts its thread.
+   *
+   * <p>Called from a pool thread, while the request may still be processed by another thread. By default, requests are not cut off.
+   *
+   * @param interruptThread whether interrupting the thread of a synchronous request is allowed
+   * @return true, when the request was cut off
+   */
+  protected boolean cutOff(InFlightRequestRegistry.Entry entry, boolean interruptThread) {
+    return false;
+  }
+
+  /**
+   * Interrupts the thread, which has registered the request, unless the request has finished meanwhile.
+   *
+   * <p>Atomic with the request finishing, which clears the interrupt. Only meant for synchronous requests, threads of async requests have
+   * moved on to other requests.
+   */
+  protected final boolean interruptRequestThread(InFlightRequestRegistry.Entry entry) {
+    return inFlightRequestRegistry.interrupt(entry.getSlot(), entry.getStartNanos());
+  }
 
-    boolean ignoredUri = requestCountStrategyProperties.getIgnoredUris().contains(requestUri);
+  /**
+   * Logs a single line about late and rejected requests, at most every `requests-summary-interval-ms`, unless forced.
+   *
+   * <p>Called from the shutdown thread only, so request threads never do log I/O for those requests.
+   */
+  private void logRequestsSummary(boolean force) {
+    long now = System.nanoTime();
+    if (!force && lastSummaryNanos != 0
+        && now - lastSummaryNanos < TimeUnit.MILLISECONDS.toNanos(requestCountStrategyProperties.getRequestsSummaryIntervalMs())) {
+      return;
+    }
+    long late = lateRequestsCount.sum();
+    long rejected = rejectedRequestsCount.sum();
+    if (late == lastSummaryLateRequestsCount && rejected == lastSummaryRejectedRequestsCount) {
+      return;
+    }
+
+    var sb = new StringBuilder();
+    if (late != lastSummaryLateRequestsCount) {
+      sb.append(late).append(" requests (+").append(late - lastSummaryLateRequestsCount)
+          .append(") arrived while draining, contact the callers' owners to fix their code. Per URI: ")
+          .append(lateRequests.getTopUris(SUMMARY_TOP_KEYS)).append(", per remote address: ")
+          .append(lateRequests.getTopRemoteAddrs(SUMMARY_TOP_KEYS)).append(". ");
+    }
+    if (rejected != lastSummaryRejectedRequestsCount) {
+      sb.append(rejected).append(" requests (+").append(rejected - lastSummaryRejectedRequestsCount)
+          .append(") denied, because we are going to shut down. Per URI: ")
+          .append(rejectedRequests.getTopUris(SUMMARY_TOP_KEYS)).append(", per remote address: ")
+          .append(rejectedRequests.getTopRemoteAddrs(SUMMARY_TOP_KEYS)).append('.');
+    }
+    lastSummaryNanos = now;
+    lastSummaryLateRequestsCount = late;
+    lastSummaryRejectedRequestsCount = rejected;
+    if (late != 0) {
+      log.warn(sb.toString().trim());
+    } else {
+      log.info(sb.toString().trim());
+    }
+  }
+
+  /**
+   * Returns the longest running in-flight requests and their counts per endpoint.
+   *
+   * @return null, when the in-flight registry is not enabled
+   */
+  public InFlightRequestsReport getInFlightRequestsReport() {
+    var registry = inFlightRequestRegistry;
+    if (registry == null) {
+      return null;
+    }
+    long now = System.nanoTime();
+    var requests = registry.snapshot().stream()
+        .sorted(Comparator.comparingLong(InFlightRequestRegistry.Entry::getStartNanos))
+        .map(entry -> new InFlightRequestsReport.InFlightRequest(resolveEndpoint(entry), entry.getUri(),
+            TimeUnit.NANOSECONDS.toMillis(now - entry.getStartNanos()), entry.getThread() == null ? null : entry.getThread().getName()))
+        .collect(Collectors.toList());
+
+    Map<String, Long> counts = new TreeMap<>(requests.stream()
+        .collect(Collectors.groupingBy(InFlightRequestsReport.InFlightRequest::getEndpoint, Collectors.counting())));
+    var countsPerEndpoint = new LinkedHashMap<String, Long>();
+    counts.entrySet().stream()
+        .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+        .forEach(entry -> countsPerEndpoint.put(entry.getKey(), entry.getValue()));
+
+    int topN = requestCountStrategyProperties.getInFlightRegistry().getTopN();
+    return new InFlightRequestsReport(inFlightRequests.getInFlight(), registry.getNotRegisteredCount(),
+        requests.subList(0, Math.min(topN, requests.size())), countsPerEndpoint);
+  }
+
+  /**
+   * Resolves the URI template of a request given to {@link #beforeRequest(String, String, String, Object)}.
+   *
+   * <p>Called from reporting, while the request may still be processed by another thread, so implementations must only read attributes
+   * from it, which are not changed once set, e.g. the ones of the handler mapping.
+   *
+   * @return null, when not known
+   */
+  protected String resolveUriTemplate(Object request) {
+    if (request instanceof HttpServletRequestWrapper) {
+      var pattern = ((HttpServletRequestWrapper) request).getAttribute(BEST_MATCHING_PATTERN_ATTRIBUTE);
+      return pattern == null ? null : pattern.toString();
+    }
+    return null;
+  }
+
+  /**
+   * Resolves the handler of a request given to {@link #beforeRequest(String, String, String, Object)}, same as
+   * {@link #resolveUriTemplate(Object)}.
+   *
+   * @return null, when not known
+   */
+  protected Object resolveHandler(Object request) {
+    if (request instanceof HttpServletRequestWrapper) {
+      return ((HttpServletRequestWrapper) request).getAttribute(BEST_MATCHING_HANDLER_ATTRIBUTE);
+    }
+    return null;
+  }
+
+  private String resolveEndpoint(InFlightRequestRegistry.Entry entry) {
+    String template = null;
+    if (entry.getRequest() != null) {
+      try {
+        template = resolveUriTemplate(entry.getRequest());
+      } catch (RuntimeException e) {
+        // The request may have been recycled by the container meanwhile.
+        log.debug("Could not resolve the URI template of '{}'.", entry.getUri(), e);
+      }
+    }
+    return template == null ? entry.getUri() : template;
+  }
+
+  private void logInFlightRequestsReport() {
+    long now = System.nanoTime();
+    if (lastReportNanos != 0 && now - lastReportNanos < TimeUnit.MILLISECONDS.toNanos(
+        requestCountStrategyProperties.getInFlightRegistry().getReportIntervalMs())) {
+      return;
+    }
+    lastReportNanos = now;
+
+    var report = getInFlightRequestsReport();
+    var sb = new StringBuilder();
+    sb.append(report.getInFlightRequests()).append(" requests in flight, ").append(report.getNotRegisteredRequests())
+        .append(" requests not registered since the start. Longest running:");
+    report.getLongestRunning().forEach(request -> sb.append("\n  ").append(request.getDurationMs()).append(" ms '")
+        .append(request.getEndpoint()).append("' ('").append(request.getUri()).append("') on '").append(request.getThread()).append("'"));
+    sb.append("\nPer endpoint:");
+    report.getCountsPerEndpoint().forEach((endpoint, count) -> sb.append("\n  ").append(count).append(" '").append(endpoint).append("'"));
+    log.info(sb.toString());
+  }
+
+  @Override
+  public CompletionStage<?> getDrainCompletion() {
+    return drainCompletion;
+  }
+
+  private boolean signalIfDrained(long requestsCount) {
+    if (requestsCount != 0) {
+      return false;
+    }
+    // New requests can not arrive anymore, so the last finishing request is the moment we are drained.
+    if (stopAcceptingRequests) {
+      drainCompletion.complete(null);
+    }
+    return true;
+  }
+
+  /**
+   * Marks the current thread as being inside the filter.
+   *
+   * @return false, when the current thread is already inside the filter, i.e. on a forward or include, and the request must be let through
+   *         without any other processing
+   */
+  protected final boolean enterFilter() {
+    if (filtering.get()) {
+      return false;
+    }
+    filtering.set(Boolean.TRUE);
+    return true;
+  }
+
+  /**
+   * Has to be called in a finally block, after {@link #enterFilter()} has returned true.
+   */
+  protected final void exitFilter() {
+    filtering.set(Boolean.FALSE);
+  }
+
+  /**
+   * Admits a request, by its URI only.
+   */
+  protected final int beforeRequest(String requestUri) {
+    return beforeRequest(requestUri, null, null, null);
+  }
+
+  /**
+   * Admits a request, without registering it in the in-flight registry.
+   */
+  protected final int beforeRequest(String requestUri, String method, String dispatcherType) {
+    return beforeRequest(requestUri, method, dispatcherType, null);
+  }
+
+  /**
+   * Admits a request.
+   *
+   * <p>Kept small and allocation free, so the JIT can inline it into filters. Every counted ticket has to be given back with
+   * {@link #afterRequest(int)}.
+   *
+   * @param method         HTTP method, or null when not known
+   * @param dispatcherType name of the servlet dispatcher type, or null when not known
+   * @param request        the request, given to {@link #resolveUriTemplate(Object)} for in-flight reports, can be null
+   * @return {@link #TICKET_REJECTED}, {@link #TICKET_NOT_COUNTED} or a counted ticket
+   */
+  protected final int beforeRequest(String requestUri, String method, String dispatcherType, Object request) {
+    // Re-dispatches are continuations of already accepted requests, so those are neither counted again, nor rejected.
+    if (isRedispatch(dispatcherType)) {
+      return TICKET_NOT_COUNTED;
+    }
+    boolean ignored = isIgnored(requestUri, method, dispatcherType);
 
     if (stopAcceptingRequests) {
-      if (ignoredUri) {
-        log.debug("Denying a request to '{}', because we are going to shut down.", requestUri);
-      } else {
-        log.info("Denying a request to '{}', because we are going to shut down.", requestUri);
+      rejectedRequestsCount.increment();
+      return TICKET_REJECTED;
+    }
+    if (ignored) {
+      return TICKET_NOT_COUNTED;
+    }
+    var warmUp = warmUpAdmission;
+    if (warmUp != null && warmUp.isWarmingUp() && !warmUp.tryAdmit(inFlightRequests.getInFlightSampled(System.nanoTime()))) {
+      return TICKET_REJECTED;
+    }
+    var limiter = concurrencyLimiter;
+    // A sampled count, summing all the stripes on every request would cost more than the limiter saves.
+    if (limiter != null && !limiter.tryAcquire(inFlightRequests.getInFlightSampled(System.nanoTime()))) {
+      limitedRequestsCount.increment();
+      return TICKET_REJECTED;
+    }
+
+    inFlightRequests.started();
+    int ticket = TICKET_COUNTED;
+    // Arrivals are only interesting during shutdown, so we do not pay for the timestamp before that.
+    if (shutdownPrepared) {
+      lastRequestArrivalNanos = System.nanoTime();
+      if (drainStarted) {
+        // Still counted, so the drain waits for it, but the caller has ignored our health for too long.
+        lateRequestsCount.increment();
+        ticket = TICKET_COUNTED_LATE;
       }
-      response.sendError(SERVICE_UNAVAILABLE);
+    }
+    var registry = inFlightRequestRegistry;
+    if (registry != null) {
+      // Slot + 1, so an unregistered request keeps the plain ticket.
+      ticket |= (registry.register(requestUri, request) + 1) << TICKET_KIND_BITS;
+    }
+    return ticket;
+  }
+
+  /**
+   * Tells if responses should ask clients to close their persistent connections, i.e. shutdown is prepared and connection draining is
+   * enabled.
+   */
+  protected final boolean isDrainingConnections() {
+    return shutdownPrepared && drainConnections;
+  }
+
+  /**
+   * Returns the `Retry-After` value of rejected requests.
+   *
+   * @return null, when it should not be sent
+   */
+  protected final String getRetryAfter() {
+    return retryAfter;
+  }
+
+  /**
+   * Only HTTP/1.x has the `Connection` header, it is not allowed in HTTP/2 responses.
+   */
+  protected static boolean isHttp1(String protocol) {
+    return protocol != null && protocol.startsWith("HTTP/1.");
+  }
+
+  /**
+   * Tells if a ticket is of a request arrived after the drain has started.
+   */
+  protected static boolean isLate(int ticket) {
+    return ticket != TICKET_REJECTED && (ticket & TICKET_KIND_MASK) == TICKET_COUNTED_LATE;
+  }
+
+  private boolean isIgnored(String requestUri, String method, String dispatcherType) {
+    return getIgnoredUrisMatcher().matches(requestUri)
+        || contains(ignoredMethods, method)
+        || contains(ignoredDispatcherTypes, dispatcherType);
+  }
+
+  private static boolean isRedispatch(String dispatcherType) {
+    return DISPATCHER_TYPE_ASYNC.equals(dispatcherType) || DISPATCHER_TYPE_ERROR.equals(dispatcherType);
+  }
+
+  private static boolean contains(Set<String> values, String value) {
+    return value != null && !values.isEmpty() && values.contains(value);
+  }
+
+  private UriPatternMatcher getIgnoredUrisMatcher() {
+    var matcher = ignoredUrisMatcher;
+    if (matcher == null) {
+      // Strategies created outside of Spring are not initialized, compiling twice on a race is harmless.
+      ignoredUrisMatcher = matcher = UriPatternMatcher.compile(requestCountStrategyProperties.getIgnoredUris());
+    }
+    return matcher;
+  }
+
+  /**
+   * Gives a ticket back, can be called from any thread, e.g. from an `AsyncListener`, but only once per ticket.
+   */
+  protected final void afterRequest(int ticket) {
+    if (ticket <= TICKET_NOT_COUNTED) {
       return;
     }
+    int slot = (ticket >>> TICKET_KIND_BITS) - 1;
+    if (slot >= 0 && inFlightRequestRegistry.unregister(slot)) {
+      // Cut off by an interrupt, which must not leak into the next work of the thread.
+      Thread.interrupted();
+    }
+    inFlightRequests.finished();
+    // Summing the stripes is not for free, and the drain can only complete after we have stopped accepting requests.
+    if (stopAcceptingRequests) {
+      signalIfDrained(inFlightRequests.getInFlight());
+    }
+  }
+
+  /**
+   * Returns the start time of a request to be given to {@link #afterRequest(int, long)}.
+   *
+   * @return 0, when latencies are not observed, so the clock is not read for nothing
+   */
+  protected final long getLatencySampleStartNanos() {
+    return concurrencyLimiter == null ? 0 : System.nanoTime();
+  }
+
+  /**
+   * Gives a ticket back, same as {@link #afterRequest(int)}, and feeds the latency of the request to the adaptive concurrency limit.
+   *
+   * @param startNanos from {@link #getLatencySampleStartNanos()}, 0 to not sample the latency, e.g. of long-polling requests
+   */
+  protected final void afterRequest(int ticket, long startNanos) {
+    var limiter = concurrencyLimiter;
+    if (limiter != null && startNanos != 0 && ticket > TICKET_NOT_COUNTED) {
+      long now = System.nanoTime();
+      limiter.onSample(now, now - startNanos);
+    }
+    afterRequest(ticket);
+  }
+
+  /**
+   * Accounts a request arrived after the drain has started, the numbers are logged as a periodic summary.
+   */
+  protected void logLateRequest(String requestUri, String remoteAddr) {
+    lateRequests.record(requestUri, remoteAddr);
+  }
+
+  /**
+   * Accounts a rejected request, the numbers are logged as a periodic summary.
+   *
+   * <p>Also called for requests shed by the warm-up admission ramp.
+   */
+  protected void logRejectedRequest(String requestUri, String remoteAddr) {
+    // Requests shed while warming up are not a matter of the shutdown summary.
+    if (stopAcceptingRequests) {
+      rejectedRequests.record(requestUri, remoteAddr);
+    }
+  }
 
-    boolean shouldCount = !stopCounting && !ignoredUri;
-    if (shouldCount) {
-      currentRequestsCount.incrementAndGet();
+  protected void doFilterInternal0(HttpServletRequestWrapper request, HttpServletResponseWrapper response, Callable<Void> chainCaller)
+      throws Exception {
+    String requestUri = request.getRequestUri();
+    int ticket = beforeRequest(requestUri, request.getMethod(), request.getDispatcherType(), request);
+    if (ticket == TICKET_REJECTED) {
+      logRejectedRequest(requestUri, request.getRemoteAddr());
+      response.sendError(SERVICE_UNAVAILABLE);
+      return;
     }
-    if (stopCounting && !ignoredUri) {
-      log.warn("Not counting request to '" + requestUri + "' from '" + request.getRemoteAddr() + ". Contact the caller's owners to fix their code.");
+    if (isLate(ticket)) {
+      logLateRequest(requestUri, request.getRemoteAddr());
     }
     try {
       chainCaller.call();
     } finally {
-      if (shouldCount) {
-        currentRequestsCount.decrementAndGet();
-      }
+      afterRequest(ticket);
     }
   }
 
+  /**
+   * Filters a request given through servlet API agnostic wrappers.
+   *
+   * @deprecated allocates the wrappers and the chain caller for every request, servlet filters of subclasses are using
+   *     {@link #beforeRequest(String, String, String, Object)} and {@link #afterRequest(int)} directly.
+   */
+  @Deprecated
   public void doFilterInternal(HttpServletRequestWrapper request, HttpServletResponseWrapper response, Callable<Void> chainCaller) throws Exception {
-    if (request.getAttribute(ALREADY_FILTERED_KEY) != null) {
+    if (!enterFilter()) {
       chainCaller.call();
+      return;
     }
 
     try {
-      request.setAttribute(ALREADY_FILTERED_KEY, Boolean.TRUE);
       doFilterInternal0(request, response, chainCaller);
     } finally {
-      request.removeAttribute(ALREADY_FILTERED_KEY);
+      exitFilter();
     }
   }
 }
@@ -0,0 +1,194 @@
+package com.transferwise.common.gracefulshutdown.strategies.servletrequestcount;
+
+import com.transferwise.common.gracefulshutdown.config.RequestCountStrategyProperties.DrainTimeLimitProperties;
+import com.transferwise.common.gracefulshutdown.utils.UriPatternMatcher;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.web.method.HandlerMethod;
+
+/**
+ * Cuts off in-flight requests, which keep the drain waiting for longer than their limit.
+ *
+ * <p>A {@link MaxDrainTime} of the handler takes precedence over the configured `drain-time-limits`. Once started, the enforcement runs on
+ * the common pool, and schedules itself for the next request reaching its limit. No new requests are registered anymore at that point,
+ * so there is nothing to do after the last limited request.
+ */
+@Slf4j
+public class DrainTimeLimiter {
+
+  /**
+   * Finishes a request over its drain time limit.
+   */
+  @FunctionalInterface
+  public interface CutOff {
+
+    /**
+     * Finishes the request.
+     *
+     * @param interruptThread whether interrupting the thread of a synchronous request is allowed
+     * @return true, when the request was cut off
+     */
+    boolean cutOff(InFlightRequestRegistry.Entry entry, boolean interruptThread);
+  }
+
+  private final InFlightRequestRegistry registry;
+
+  private final UnaryOperator<Object> handlerResolver;
+
+  private final CutOff cutOff;
+
+  /**
+   * Null, when no `drain-time-limits` are configured.
+   */
+  private final UriPatternMatcher limitsMatcher;
+
+  private final DrainTimeLimitProperties[] limitsByPattern;
+
+  /**
+   * Start times of requests over their drain time limit, which we have tried to cut off already, by their slots.
+   *
+   * <p>Enforcement runs follow each other, but on whichever pool thread runs the next one.
+   */
+  private final Map<Integer, Long> cutOffAttempts = new ConcurrentHashMap<>();
+
+  private final LongAdder cutOffRequestsCount = new LongAdder();
+
+  private volatile long startNanos;
+
+  private volatile boolean stopped;
+
+  /**
+   * Creates a limiter.
+   *
+   * @param handlerResolver resolves the handler of a registered request, to find its {@link MaxDrainTime}
+   */
+  public DrainTimeLimiter(List<DrainTimeLimitProperties> limits, InFlightRequestRegistry registry, UnaryOperator<Object> handlerResolver,
+      CutOff cutOff) {
+    this.registry = registry;
+    this.handlerResolver = handlerResolver;
+    this.cutOff = cutOff;
+    var patterns = new ArrayList<String>();
+    var patternLimits = new ArrayList<DrainTimeLimitProperties>();
+    for (var limit : limits) {
+      for (var uri : limit.getUris()) {
+        patterns.add(uri);
+        patternLimits.add(limit);
+      }
+    }
+    limitsMatcher = patterns.isEmpty() ? null : UriPatternMatcher.compile(patterns);
+    limitsByPattern = patternLimits.toArray(new DrainTimeLimitProperties[0]);
+  }
+
+  /**
+   * Starts enforcing the limits, drain times are measured from now.
+   */
+  public void start() {
+    startNanos = System.nanoTime();
+    schedule(0);
+  }
+
+  /**
+   * Stops enforcing the limits, e.g. when the application is terminating anyway.
+   */
+  public void stop() {
+    stopped = true;
+  }
+
+  /**
+   * Returns the number of requests cut off.
+   */
+  public long getCutOffRequestsCount() {
+    return cutOffRequestsCount.sum();
+  }
+
+  private void schedule(long delayMs) {
+    CompletableFuture.runAsync(this::enforce, CompletableFuture.delayedExecutor(delayMs, TimeUnit.MILLISECONDS));
+  }
+
+  private void enforce() {
+    if (stopped) {
+      return;
+    }
+    long drainTimeMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    long nextCheckMs = Long.MAX_VALUE;
+    try {
+      for (var entry : registry.snapshot()) {
+        Long attemptedStartNanos = cutOffAttempts.get(entry.getSlot());
+        if (attemptedStartNanos != null && attemptedStartNanos == entry.getStartNanos()) {
+          continue;
+        }
+        var limit = resolveLimit(entry);
+        if (limit == null) {
+          continue;
+        }
+        if (drainTimeMs < limit.getMaxDrainTimeMs()) {
+          nextCheckMs = Math.min(nextCheckMs, limit.getMaxDrainTimeMs() - drainTimeMs);
+          continue;
+        }
+        cutOffAttempts.put(entry.getSlot(), entry.getStartNanos());
+        cutOffRequest(entry, limit, drainTimeMs);
+      }
+    } catch (Throwable t) {
+      log.error("Enforcing drain time limits failed.", t);
+    }
+    if (nextCheckMs != Long.MAX_VALUE) {
+      schedule(nextCheckMs);
+    }
+  }
+
+  private void cutOffRequest(InFlightRequestRegistry.Entry entry, DrainTimeLimitProperties limit, long drainTimeMs) {
+    boolean cutOffDone = false;
+    try {
+      // The snapshot may be stale, the request could have finished and its slot been reused.
+      cutOffDone = registry.isRegistered(entry.getSlot(), entry.getStartNanos()) && cutOff.cutOff(entry, limit.isInterruptThread());
+    } catch (RuntimeException e) {
+      log.debug("Cutting off request '{}' failed.", entry.getUri(), e);
+    }
+    if (cutOffDone) {
+      cutOffRequestsCount.increment();
+      log.warn("Cut off request '{}', it kept the drain waiting for {} ms, over its limit of {} ms.", entry.getUri(), drainTimeMs,
+          limit.getMaxDrainTimeMs());
+    } else {
+      log.info("Request '{}' has kept the drain waiting for {} ms, over its limit of {} ms, but it can not be cut off.", entry.getUri(),
+          drainTimeMs, limit.getMaxDrainTimeMs());
+    }
+  }
+
+  private DrainTimeLimitProperties resolveLimit(InFlightRequestRegistry.Entry entry) {
+    if (entry.getRequest() != null) {
+      try {
+        var maxDrainTime = findMaxDrainTime(handlerResolver.apply(entry.getRequest()));
+        if (maxDrainTime != null) {
+          var limit = new DrainTimeLimitProperties();
+          limit.setMaxDrainTimeMs(maxDrainTime.value());
+          limit.setInterruptThread(maxDrainTime.interruptThread());
+          return limit;
+        }
+      } catch (RuntimeException e) {
+        log.debug("Could not resolve the handler of '{}'.", entry.getUri(), e);
+      }
+    }
+    if (limitsMatcher == null) {
+      return null;
+    }
+    int pattern = limitsMatcher.match(entry.getUri());
+    return pattern == UriPatternMatcher.NO_MATCH ? null : limitsByPattern[pattern];
+  }
+
+  private static MaxDrainTime findMaxDrainTime(Object handler) {
+    if (!(handler instanceof HandlerMethod)) {
+      return null;
+    }
+    var handlerMethod = (HandlerMethod) handler;
+    var maxDrainTime = handlerMethod.getMethodAnnotation(MaxDrainTime.class);
+    return maxDrainTime != null ? maxDrainTime : AnnotatedElementUtils.findMergedAnnotation(handlerMethod.getBeanType(), MaxDrainTime.class);
+  }
+}
@@ -0,0 +1,209 @@
+package com.transferwise.common.gracefulshutdown.strategies.servletrequestcount;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.Value;
+
+/**
+ * Registry of in-flight requests, on slots preallocated at startup.
+ *
+ * <p>A slot is claimed by a single CAS of its start time, so registering and unregistering a request does not allocate. A request probes
+ * at most {@link #MAX_PROBES} slots from the one its thread hashes to, so a full registry costs every request a few reads only. Requests
+ * not finding a free slot are only counted as not registered.
+ *
+ * <p>Snapshots are taken without stopping the writers. A slot is only reported when its start time is the same before and after reading
+ * the other fields, so a snapshot never mixes up two requests.
+ *
+ * <p>The lowest bits of a slot's state are flags, start times have those cleared. Interrupting the thread of a request is marked in the
+ * state by a CAS, which unregistering waits for, so an interrupt can never hit the thread after its request has finished.
+ */
+public class InFlightRequestRegistry {
+
+  public static final int NOT_REGISTERED = -1;
+
+  private static final long FREE = 0;
+
+  private static final long TAKEN = 1;
+
+  private static final long INTERRUPTING = 2;
+
+  private static final long INTERRUPTED = 4;
+
+  private static final long FLAGS = TAKEN | INTERRUPTING | INTERRUPTED;
+
+  // Not taken, but not free yet either, while the fields are being cleared.
+  private static final long RELEASING = 8;
+
+  private static final int MAX_PROBES = 16;
+
+  // Slots are carried in the upper bits of request count tickets.
+  private static final int MAX_CAPACITY = 1 << 20;
+
+  private final int slotsMask;
+  private final AtomicLongArray states;
+  private final AtomicReferenceArray<String> uris;
+  private final AtomicReferenceArray<Thread> threads;
+  private final AtomicReferenceArray<Object> requests;
+  private final LongAdder notRegisteredCount = new LongAdder();
+
+  public InFlightRequestRegistry(int minCapacity) {
+    int capacity = 1;
+    while (capacity < minCapacity && capacity < MAX_CAPACITY) {
+      capacity <<= 1;
+    }
+    slotsMask = capacity - 1;
+    states = new AtomicLongArray(capacity);
+    uris = new AtomicReferenceArray<>(capacity);
+    threads = new AtomicReferenceArray<>(capacity);
+    requests = new AtomicReferenceArray<>(capacity);
+  }
+
+  /**
+   * Registers a request of the current thread.
+   *
+   * @param request kept to resolve the handler and the URI template, and to cut off async requests, can be null. Those are done from other
+   *     threads, while the request is being processed, so only attributes, which are not changed once set, e.g. by the handler mapping,
+   *     and the async context are read from it.
+   * @return the slot to be given to {@link #unregister(int)}, or {@link #NOT_REGISTERED}
+   */
+  public int register(String uri, Object request) {
+    long now = (System.nanoTime() & ~FLAGS) | TAKEN;
+    Thread thread = Thread.currentThread();
+    int first = firstSlot(thread);
+    int probes = Math.min(MAX_PROBES, slotsMask + 1);
+    for (int i = 0; i < probes; i++) {
+      int slot = (first + i) & slotsMask;
+      if (states.get(slot) == FREE && states.compareAndSet(slot, FREE, now)) {
+        threads.set(slot, thread);
+        requests.set(slot, request);
+        // Set last, a slot having its URI is fully registered.
+        uris.set(slot, uri);
+        return slot;
+      }
+    }
+    notRegisteredCount.increment();
+    return NOT_REGISTERED;
+  }
+
+  /**
+   * Frees the slot, after an interrupt of the request's thread in progress has been raised.
+   *
+   * @return true, when the request was interrupted by {@link #interrupt(int, long)}, and the current thread is the interrupted one, so the
+   *     caller is to clear the interrupt
+   */
+  public boolean unregister(int slot) {
+    if (slot == NOT_REGISTERED) {
+      return false;
+    }
+    while (true) {
+      long state = states.get(slot);
+      if ((state & INTERRUPTING) != 0) {
+        // Interrupting only takes `Thread.interrupt()`, so this is brief.
+        Thread.onSpinWait();
+      } else if (states.compareAndSet(slot, state, RELEASING)) {
+        boolean clearInterrupt = (state & INTERRUPTED) != 0 && threads.get(slot) == Thread.currentThread();
+        // Cleared before freeing the slot, so a next owner's fields can not be read with our start time.
+        requests.set(slot, null);
+        threads.set(slot, null);
+        uris.set(slot, null);
+        states.set(slot, FREE);
+        return clearInterrupt;
+      }
+    }
+  }
+
+  /**
+   * Interrupts the thread of the request started at the given time, unless it has finished meanwhile, or was interrupted already.
+   *
+   * <p>Atomic with {@link #unregister(int)}, which does not free the slot, before the interrupt has been raised.
+   *
+   * @return true, when the thread was interrupted
+   */
+  public boolean interrupt(int slot, long startNanos) {
+    if (!states.compareAndSet(slot, startNanos, startNanos | INTERRUPTING)) {
+      return false;
+    }
+    Thread thread = threads.get(slot);
+    if (thread == null) {
+      states.set(slot, startNanos);
+      return false;
+    }
+    try {
+      thread.interrupt();
+    } finally {
+      states.set(slot, startNanos | INTERRUPTED);
+    }
+    return true;
+  }
+
+  public int getCapacity() {
+    return slotsMask + 1;
+  }
+
+  /**
+   * Returns the number of requests, which did not find a free slot, since the start.
+   */
+  public long getNotRegisteredCount() {
+    return notRegisteredCount.sum();
+  }
+
+  /**
+   * Returns the currently registered requests, in no particular order.
+   */
+  public List<Entry> snapshot() {
+    var result = new ArrayList<Entry>();
+    for (int slot = 0; slot <= slotsMask; slot++) {
+      long state = states.get(slot);
+      if ((state & TAKEN) == 0) {
+        continue;
+      }
+      long start = startOf(state);
+      String uri = uris.get(slot);
+      Thread thread = threads.get(slot);
+      Object request = requests.get(slot);
+      // Not yet fully registered, or reused by another request meanwhile.
+      if (uri == null || startOf(states.get(slot)) != start) {
+        continue;
+      }
+      result.add(new Entry(slot, uri, request, thread, start));
+    }
+    return result;
+  }
+
+  @SuppressWarnings("deprecation")
+  private int firstSlot(Thread thread) {
+    long hash = thread.getId() * 0x9E3779B97F4A7C15L;
+    return (int) (hash >>> 32) & slotsMask;
+  }
+
+  /**
+   * Tells if the slot is still taken by the request started at the given time.
+   */
+  public boolean isRegistered(int slot, long startNanos) {
+    return startOf(states.get(slot)) == startNanos;
+  }
+
+  private static long startOf(long state) {
+    return state & ~(INTERRUPTING | INTERRUPTED);
+  }
+
+  @Value
+  public static class Entry {
+
+    int slot;
+
+    String uri;
+
+    /**
+     * The request given on registering, to read only attributes, which are not changed once set, and the async context from.
+     */
+    Object request;
+
+    Thread thread;
+
+    long startNanos;
+  }
+}
@@ -0,0 +1,44 @@
+package com.transferwise.common.gracefulshutdown.strategies.servletrequestcount;
+
+import java.util.List;
+import java.util.Map;
+import lombok.Value;
+
+/**
+ * What keeps the request count strategy from giving a green light.
+ */
+@Value
+public class InFlightRequestsReport {
+
+  /**
+   * All in-flight requests, including the ones not registered.
+   */
+  long inFlightRequests;
+
+  /**
+   * Requests, which did not find a free slot in the registry, since the start.
+   */
+  long notRegisteredRequests;
+
+  /**
+   * Longest running registered requests, the longest first.
+   */
+  List<InFlightRequest> longestRunning;
+
+  /**
+   * Registered requests per URI template, or per URI when the template is not known (yet), the most frequent first.
+   */
+  Map<String, Long> countsPerEndpoint;
+
+  @Value
+  public static class InFlightRequest {
+
+    String endpoint;
+
+    String uri;
+
+    long durationMs;
+
+    String thread;
+  }
+}
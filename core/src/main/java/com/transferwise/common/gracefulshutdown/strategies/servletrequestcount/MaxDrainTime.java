@@ -0,0 +1,28 @@
+package com.transferwise.common.gracefulshutdown.strategies.servletrequestcount;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Limits how long requests of a handler method, or of all handler methods of a controller, can keep the drain waiting.
+ *
+ * <p>Takes precedence over `request-count-strategy.drain-time-limits`. Requests are only cut off, when the in-flight registry is enabled.
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface MaxDrainTime {
+
+  /**
+   * How many milliseconds a request can keep the drain waiting, after requests are not accepted anymore.
+   */
+  int value();
+
+  /**
+   * Interrupt the thread of a synchronous request over the limit. Async requests are always completed with 503.
+   */
+  boolean interruptThread() default false;
+}
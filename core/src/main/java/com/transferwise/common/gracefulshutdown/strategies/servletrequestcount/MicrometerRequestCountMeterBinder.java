@@ -0,0 +1,70 @@
+package com.transferwise.common.gracefulshutdown.strategies.servletrequestcount;
+
+import com.transferwise.common.gracefulshutdown.timeline.MicrometerShutdownTimelineListener;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes in-flight, late, rejected, cut off, shed and limited requests of request count strategies, the estimated remaining drain time,
+ * and the adaptive concurrency limit with the latencies it is based on.
+ *
+ * <p>Meters only read the strategies' own counters, so requests do not pay anything extra for those.
+ */
+public class MicrometerRequestCountMeterBinder implements MeterBinder {
+
+  private static final String METRIC_PREFIX = MicrometerShutdownTimelineListener.METRIC_PREFIX + "requests.";
+  private static final String TAG_STRATEGY = "strategy";
+
+  private final List<BaseRequestCountGracefulShutdownStrategy> strategies;
+
+  public MicrometerRequestCountMeterBinder(List<BaseRequestCountGracefulShutdownStrategy> strategies) {
+    this.strategies = strategies;
+  }
+
+  @Override
+  public void bindTo(MeterRegistry meterRegistry) {
+    for (var strategy : strategies) {
+      String name = strategy.getClass().getSimpleName();
+      Gauge.builder(METRIC_PREFIX + "in.flight", strategy, BaseRequestCountGracefulShutdownStrategy::getCurrentRequestsCount)
+          .tag(TAG_STRATEGY, name).register(meterRegistry);
+      FunctionCounter.builder(METRIC_PREFIX + "late", strategy, BaseRequestCountGracefulShutdownStrategy::getLateRequestsCount)
+          .tag(TAG_STRATEGY, name).register(meterRegistry);
+      FunctionCounter.builder(METRIC_PREFIX + "rejected", strategy, BaseRequestCountGracefulShutdownStrategy::getRejectedRequestsCount)
+          .tag(TAG_STRATEGY, name).register(meterRegistry);
+      FunctionCounter.builder(METRIC_PREFIX + "cut.off", strategy, BaseRequestCountGracefulShutdownStrategy::getCutOffRequestsCount)
+          .tag(TAG_STRATEGY, name).register(meterRegistry);
+      FunctionCounter.builder(METRIC_PREFIX + "shed", strategy, BaseRequestCountGracefulShutdownStrategy::getShedRequestsCount)
+          .tag(TAG_STRATEGY, name).register(meterRegistry);
+      FunctionCounter.builder(METRIC_PREFIX + "limited", strategy, BaseRequestCountGracefulShutdownStrategy::getLimitedRequestsCount)
+          .tag(TAG_STRATEGY, name).register(meterRegistry);
+      var limiter = strategy.getConcurrencyLimiter();
+      if (limiter != null) {
+        Gauge.builder(METRIC_PREFIX + "concurrency.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+            .tag(TAG_STRATEGY, name).register(meterRegistry);
+        TimeGauge.builder(METRIC_PREFIX + "latency", limiter, TimeUnit.NANOSECONDS, AdaptiveConcurrencyLimiter::getLatencyNanos)
+            .tag(TAG_STRATEGY, name).register(meterRegistry);
+        TimeGauge.builder(METRIC_PREFIX + "latency.baseline", limiter, TimeUnit.NANOSECONDS, AdaptiveConcurrencyLimiter::getBaselineLatencyNanos)
+            .tag(TAG_STRATEGY, name).register(meterRegistry);
+      }
+      TimeGauge.builder(METRIC_PREFIX + "drain.estimated.time", strategy, TimeUnit.MILLISECONDS,
+              MicrometerRequestCountMeterBinder::getEstimatedDrainTimeMs)
+          .tag(TAG_STRATEGY, name).register(meterRegistry);
+    }
+  }
+
+  /**
+   * NaN, which registries do not publish, while not known, infinity, when the requests are not draining at all.
+   */
+  private static double getEstimatedDrainTimeMs(BaseRequestCountGracefulShutdownStrategy strategy) {
+    long estimateMs = strategy.getEstimatedDrainTimeMs();
+    if (estimateMs < 0) {
+      return Double.NaN;
+    }
+    return estimateMs == Long.MAX_VALUE ? Double.POSITIVE_INFINITY : estimateMs;
+  }
+}
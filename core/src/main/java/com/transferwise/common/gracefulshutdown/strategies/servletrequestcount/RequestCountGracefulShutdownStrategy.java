@@ -1,8 +1,8 @@
 package com.transferwise.common.gracefulshutdown.strategies.servletrequestcount;
 
-import com.transferwise.common.baseutils.ExceptionUtils;
-import com.transferwise.common.gracefulshutdown.strategies.servletrequestcount.servletwrappers.JakartaHttpServletRequestWrapper;
-import com.transferwise.common.gracefulshutdown.strategies.servletrequestcount.servletwrappers.JakartaHttpServletResponseWrapper;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.DispatcherType;
 import jakarta.servlet.Filter;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -11,24 +11,153 @@ import jakarta.servlet.ServletResponse;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 public class RequestCountGracefulShutdownStrategy extends BaseRequestCountGracefulShutdownStrategy implements Filter {
 
+  /**
+   * Allocation free, the servlet API objects are used directly, instead of through wrappers.
+   *
+   * <p>Requests gone async are tracked until their completion by an {@link AsyncListener}, only those allocate.
+   */
   @Override
   public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+    if (!enterFilter()) {
+      chain.doFilter(request, response);
+      return;
+    }
+
     try {
-      doFilterInternal(new JakartaHttpServletRequestWrapper((HttpServletRequest) request),
-          new JakartaHttpServletResponseWrapper((HttpServletResponse) response), () -> {
-            chain.doFilter(request, response);
-            return null;
+      HttpServletRequest httpRequest = (HttpServletRequest) request;
+      DispatcherType dispatcherType = httpRequest.getDispatcherType();
+      // Re-dispatches belong to a request counted already, e.g. the error page of a synchronous request, or a tracked async one.
+      if (dispatcherType != DispatcherType.REQUEST) {
+        chain.doFilter(request, response);
+        return;
+      }
+
+      String requestUri = httpRequest.getRequestURI();
+      int ticket = beforeRequest(requestUri, httpRequest.getMethod(), dispatcherType.name(), httpRequest);
+      HttpServletResponse httpResponse = (HttpServletResponse) response;
+      if (isDrainingConnections() && isHttp1(request.getProtocol())) {
+        httpResponse.setHeader(CONNECTION_HEADER, CONNECTION_CLOSE);
+      }
+      if (ticket == TICKET_REJECTED) {
+        logRejectedRequest(requestUri, request.getRemoteAddr());
+        String retryAfter = getRetryAfter();
+        if (retryAfter != null) {
+          httpResponse.setHeader(RETRY_AFTER_HEADER, retryAfter);
+        }
+        httpResponse.sendError(SERVICE_UNAVAILABLE);
+        return;
+      }
+      if (isLate(ticket)) {
+        logLateRequest(requestUri, request.getRemoteAddr());
+      }
+      long startNanos = getLatencySampleStartNanos();
+      try {
+        chain.doFilter(request, response);
+      } finally {
+        // Latencies of async requests, e.g. of long-polling, do not tell anything about the saturation, so those are not sampled.
+        if (!request.isAsyncStarted() || !trackAsync(request, response, ticket)) {
+          afterRequest(ticket, startNanos);
+        }
+      }
+    } finally {
+      exitFilter();
+    }
+  }
+
+  private boolean trackAsync(ServletRequest request, ServletResponse response, int ticket) {
+    try {
+      request.getAsyncContext().addListener(new AsyncRequestListener(ticket), request, response);
+    } catch (IllegalStateException e) {
+      // Completed meanwhile.
+      return false;
+    }
+    request.setAttribute(ASYNC_TRACKED_ATTRIBUTE, Boolean.TRUE);
+    return true;
+  }
+
+  @Override
+  protected String resolveUriTemplate(Object request) {
+    if (request instanceof HttpServletRequest) {
+      var pattern = ((HttpServletRequest) request).getAttribute(BEST_MATCHING_PATTERN_ATTRIBUTE);
+      return pattern == null ? null : pattern.toString();
+    }
+    return super.resolveUriTemplate(request);
+  }
+
+  @Override
+  protected Object resolveHandler(Object request) {
+    if (request instanceof HttpServletRequest) {
+      return ((HttpServletRequest) request).getAttribute(BEST_MATCHING_HANDLER_ATTRIBUTE);
+    }
+    return super.resolveHandler(request);
+  }
+
+  /**
+   * Async requests are completed with 503, unless the response is committed already. Threads of synchronous requests are interrupted,
+   * when allowed.
+   */
+  @Override
+  protected boolean cutOff(InFlightRequestRegistry.Entry entry, boolean interruptThread) {
+    if (entry.getRequest() instanceof HttpServletRequest) {
+      var request = (HttpServletRequest) entry.getRequest();
+      if (request.getAttribute(ASYNC_TRACKED_ATTRIBUTE) != null) {
+        try {
+          var asyncContext = request.getAsyncContext();
+          var response = asyncContext.getResponse();
+          if (!response.isCommitted() && response instanceof HttpServletResponse) {
+            ((HttpServletResponse) response).setStatus(SERVICE_UNAVAILABLE);
           }
-      );
-    } catch (ServletException | IOException e) {
-      throw e;
-    } catch (Exception e) {
-      throw ExceptionUtils.toUnchecked(e);
+          asyncContext.complete();
+          return true;
+        } catch (IllegalStateException e) {
+          // Completed or re-dispatched meanwhile.
+          return false;
+        }
+      }
+    }
+    return interruptThread && interruptRequestThread(entry);
+  }
+
+  /**
+   * Gives the ticket back, when the async request has completed, including after a timeout or an error.
+   */
+  private class AsyncRequestListener implements AsyncListener {
+
+    private final int ticket;
+
+    private final AtomicBoolean finished = new AtomicBoolean();
+
+    AsyncRequestListener(int ticket) {
+      this.ticket = ticket;
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+      if (finished.compareAndSet(false, true)) {
+        afterRequest(ticket);
+      }
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+      // The container completes the request after that.
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+      // The container completes the request after that.
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+      // Listeners are dropped, when async is started again on a re-dispatch.
+      event.getAsyncContext().addListener(this, event.getSuppliedRequest(), event.getSuppliedResponse());
     }
   }
 }
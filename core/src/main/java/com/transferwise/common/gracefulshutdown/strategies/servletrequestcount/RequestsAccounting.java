@@ -0,0 +1,71 @@
+package com.transferwise.common.gracefulshutdown.strategies.servletrequestcount;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Lock-free counts of requests per URI and per remote address, to be summarized, instead of logging every single request.
+ *
+ * <p>Keys are capped, requests with keys beyond the cap are counted under {@link #OTHER}, so a scan of random URIs can not exhaust the
+ * memory.
+ */
+public class RequestsAccounting {
+
+  public static final String OTHER = "<other>";
+
+  private static final Function<String, LongAdder> NEW_ADDER = key -> new LongAdder();
+
+  private final int maxKeys;
+
+  private final Map<String, LongAdder> perUri = new ConcurrentHashMap<>();
+
+  private final Map<String, LongAdder> perRemoteAddr = new ConcurrentHashMap<>();
+
+  public RequestsAccounting(int maxKeys) {
+    this.maxKeys = maxKeys;
+  }
+
+  public void record(String uri, String remoteAddr) {
+    increment(perUri, uri);
+    increment(perRemoteAddr, remoteAddr);
+  }
+
+  /**
+   * Returns the given number of URIs with the most requests, the most frequent first.
+   */
+  public Map<String, Long> getTopUris(int count) {
+    return top(perUri, count);
+  }
+
+  /**
+   * Returns the given number of remote addresses with the most requests, the most frequent first.
+   */
+  public Map<String, Long> getTopRemoteAddrs(int count) {
+    return top(perRemoteAddr, count);
+  }
+
+  private void increment(Map<String, LongAdder> counts, String key) {
+    if (key == null) {
+      key = OTHER;
+    }
+    // A plain read first, the common case of a known key does not lock anything.
+    var adder = counts.get(key);
+    if (adder == null) {
+      adder = counts.computeIfAbsent(counts.size() < maxKeys ? key : OTHER, NEW_ADDER);
+    }
+    adder.increment();
+  }
+
+  private static Map<String, Long> top(Map<String, LongAdder> counts, int count) {
+    return counts.entrySet().stream()
+        .map(entry -> Map.entry(entry.getKey(), entry.getValue().sum()))
+        .sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()))
+        .limit(count)
+        .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a, LinkedHashMap::new));
+  }
+}
@@ -0,0 +1,99 @@
+package com.transferwise.common.gracefulshutdown.strategies.servletrequestcount;
+
+import com.transferwise.common.gracefulshutdown.config.RequestCountStrategyProperties.WarmUpProperties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Admission ramp: a share of requests, picked at random, and a concurrency cap, both growing linearly over the warm-up period, which
+ * starts with the first request after the application has started.
+ *
+ * <p>The cap is checked before the request is counted, against a sampled in-flight count, so concurrent and quick successive arrivals can
+ * exceed it slightly.
+ */
+@Slf4j
+public class WarmUpAdmission {
+
+  private final WarmUpProperties properties;
+
+  private final long durationNanos;
+
+  private final LongAdder shedRequestsCount = new LongAdder();
+
+  private volatile boolean warmingUp;
+
+  /**
+   * Set by the first request after {@link #start()}, 0 before that.
+   */
+  private volatile long startNanos;
+
+  public WarmUpAdmission(WarmUpProperties properties) {
+    this.properties = properties;
+    this.durationNanos = TimeUnit.MILLISECONDS.toNanos(properties.getDurationMs());
+  }
+
+  /**
+   * Starts shedding, the ramp itself starts with the first request.
+   */
+  public void start() {
+    log.info("Admission ramp will warm up the application for {} ms, from the first request.", properties.getDurationMs());
+    warmingUp = true;
+  }
+
+  public boolean isWarmingUp() {
+    return warmingUp;
+  }
+
+  /**
+   * Decides if a request is admitted, shed ones are counted.
+   *
+   * @param inFlightSampled requests in flight, can be slightly stale
+   * @return true, when the request is admitted
+   */
+  public boolean tryAdmit(long inFlightSampled) {
+    if (!warmingUp) {
+      return true;
+    }
+    long now = System.nanoTime();
+    long start = startNanos;
+    if (start == 0) {
+      // Racing requests may each set their own start, those are nanoseconds apart.
+      startNanos = start = now;
+    }
+    double progress = (double) (now - start) / durationNanos;
+    if (progress >= 1) {
+      finish();
+      return true;
+    }
+    double acceptedShare = properties.getInitialAcceptedShare() + (1 - properties.getInitialAcceptedShare()) * progress;
+    boolean admitted = acceptedShare >= 1 || ThreadLocalRandom.current().nextDouble() < acceptedShare;
+    if (admitted) {
+      double concurrencyCap = properties.getInitialConcurrency() + (properties.getMaxConcurrency() - properties.getInitialConcurrency()) * progress;
+      admitted = inFlightSampled < concurrencyCap;
+    }
+    if (!admitted) {
+      shedRequestsCount.increment();
+    }
+    return admitted;
+  }
+
+  /**
+   * Stops shedding, e.g. when the shutdown starts, as clients are going away anyway.
+   */
+  public synchronized void finish() {
+    if (!warmingUp) {
+      return;
+    }
+    warmingUp = false;
+    log.info("Application has warmed up, {} requests were shed meanwhile.", shedRequestsCount.sum());
+  }
+
+  /**
+   * Returns the number of requests shed.
+   */
+  public long getShedRequestsCount() {
+    return shedRequestsCount.sum();
+  }
+}
@@ -7,6 +7,14 @@ public interface HttpServletRequestWrapper {
 
   String getRequestUri();
 
+  default String getMethod() {
+    return null;
+  }
+
+  default String getDispatcherType() {
+    return null;
+  }
+
   String getRemoteAddr();
 
   Object getAttribute(String name);
@@ -21,6 +21,16 @@ public class JavaxHttpServletRequestWrapper implements HttpServletRequestWrapper
     return delegate.getRequestURI();
   }
 
+  @Override
+  public String getMethod() {
+    return delegate.getMethod();
+  }
+
+  @Override
+  public String getDispatcherType() {
+    return delegate.getDispatcherType().name();
+  }
+
   @Override
   public String getRemoteAddr() {
     return delegate.getRemoteAddr();
@@ -0,0 +1,31 @@
+package com.transferwise.common.gracefulshutdown.strategies.webfluxrequestcount;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.Ordered;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/**
+ * Puts a {@link WebFluxRequestCountGracefulShutdownStrategy} into the web filter chain, at the given order.
+ *
+ * <p>The strategy is not ordered itself, as the order of a strategy bean is its shutdown order as well.
+ */
+@RequiredArgsConstructor
+public class WebFluxRequestCountFilter implements WebFilter, Ordered {
+
+  private final WebFluxRequestCountGracefulShutdownStrategy strategy;
+
+  private final int order;
+
+  @Override
+  public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+    return strategy.filter(exchange, chain);
+  }
+
+  @Override
+  public int getOrder() {
+    return order;
+  }
+}
@@ -0,0 +1,75 @@
+package com.transferwise.common.gracefulshutdown.strategies.webfluxrequestcount;
+
+import com.transferwise.common.gracefulshutdown.strategies.servletrequestcount.BaseRequestCountGracefulShutdownStrategy;
+import java.net.InetSocketAddress;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+/**
+ * Request count strategy of reactive web applications.
+ *
+ * <p>An exchange is counted from the subscription to the filter chain until it terminates, i.e. until the response, including a streamed
+ * one, is fully written, has failed, or the client has gone away. Ignore rules, the in-flight registry and rejecting requests after the
+ * clients reaction time work the same way as for servlet applications.
+ *
+ * <p>It is put into the web filter chain by a {@link WebFluxRequestCountFilter}, so its filter order does not become its shutdown order.
+ */
+@Slf4j
+public class WebFluxRequestCountGracefulShutdownStrategy extends BaseRequestCountGracefulShutdownStrategy {
+
+  /**
+   * Request attribute, where Spring WebFlux puts the `PathPattern` of the handler.
+   */
+  protected static final String REACTIVE_BEST_MATCHING_PATTERN_ATTRIBUTE = "org.springframework.web.reactive.HandlerMapping.bestMatchingPattern";
+
+  /**
+   * Counts the exchange, or rejects it, same as a `WebFilter`.
+   */
+  public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+    return Mono.defer(() -> {
+      var request = exchange.getRequest();
+      String requestUri = request.getPath().value();
+      int ticket = beforeRequest(requestUri, request.getMethod().name(), null, exchange);
+      var response = exchange.getResponse();
+      if (isDrainingConnections()) {
+        // Reactor Netty drops connection specific headers from HTTP/2 responses.
+        response.getHeaders().set(CONNECTION_HEADER, CONNECTION_CLOSE);
+      }
+      if (ticket == TICKET_REJECTED) {
+        logRejectedRequest(requestUri, getRemoteAddr(request.getRemoteAddress()));
+        String retryAfter = getRetryAfter();
+        if (retryAfter != null) {
+          response.getHeaders().set(RETRY_AFTER_HEADER, retryAfter);
+        }
+        response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+        return response.setComplete();
+      }
+      if (isLate(ticket)) {
+        logLateRequest(requestUri, getRemoteAddr(request.getRemoteAddress()));
+      }
+      if (ticket == TICKET_NOT_COUNTED) {
+        return chain.filter(exchange);
+      }
+      long startNanos = getLatencySampleStartNanos();
+      // Called exactly once, on completion, error or cancellation. Latencies of cancelled exchanges are not sampled.
+      return chain.filter(exchange).doFinally(signal -> afterRequest(ticket, signal == SignalType.CANCEL ? 0 : startNanos));
+    });
+  }
+
+  @Override
+  protected String resolveUriTemplate(Object request) {
+    if (request instanceof ServerWebExchange) {
+      Object pattern = ((ServerWebExchange) request).getAttribute(REACTIVE_BEST_MATCHING_PATTERN_ATTRIBUTE);
+      return pattern == null ? null : pattern.toString();
+    }
+    return super.resolveUriTemplate(request);
+  }
+
+  private static String getRemoteAddr(InetSocketAddress remoteAddress) {
+    return remoteAddress == null ? null : remoteAddress.getHostString();
+  }
+}
@@ -0,0 +1,75 @@
+package com.transferwise.common.gracefulshutdown.timeline;
+
+import com.transferwise.common.gracefulshutdown.timeline.ShutdownTimelineEvent.Type;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the shutdown timeline as Micrometer meters.
+ *
+ * <p>Metrics of an ongoing shutdown may never be scraped, so the previous shutdown's timeline is published as gauges on startup as well.
+ */
+public class MicrometerShutdownTimelineListener implements ShutdownTimelineListener {
+
+  public static final String METRIC_PREFIX = "tw.graceful.shutdown.";
+
+  private static final String TAG_PHASE = "phase";
+  private static final String TAG_HOOK = "hook";
+  private static final String TAG_STRATEGY = "strategy";
+  private static final String TAG_OUTCOME = "outcome";
+
+  private final MeterRegistry meterRegistry;
+
+  private final Map<String, AtomicLong> gaugeValues = new ConcurrentHashMap<>();
+
+  public MicrometerShutdownTimelineListener(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+  }
+
+  @Override
+  public void onEvent(ShutdownTimelineEvent event) {
+    switch (event.getType()) {
+      case PHASE:
+        Timer.builder(METRIC_PREFIX + "phase").tag(TAG_PHASE, event.getName()).register(meterRegistry)
+            .record(event.getDurationMs(), TimeUnit.MILLISECONDS);
+        break;
+      case HOOK:
+        Timer.builder(METRIC_PREFIX + "strategy.hook").tag(TAG_HOOK, event.getName()).tag(TAG_STRATEGY, event.getStrategy())
+            .tag(TAG_OUTCOME, event.getOutcome().name()).register(meterRegistry)
+            .record(event.getDurationMs(), TimeUnit.MILLISECONDS);
+        break;
+      case GREEN_LIGHT:
+        Timer.builder(METRIC_PREFIX + "strategy.time.to.green.light").tag(TAG_STRATEGY, event.getStrategy())
+            .tag(TAG_OUTCOME, event.getOutcome().name()).register(meterRegistry)
+            .record(event.getDurationMs(), TimeUnit.MILLISECONDS);
+        gauge(METRIC_PREFIX + "strategy.red.light.iterations", TAG_STRATEGY, event.getStrategy()).set(event.getRedLightIterations());
+        break;
+      default:
+        break;
+    }
+  }
+
+  @Override
+  public void onPreviousTimeline(ShutdownTimeline timeline) {
+    for (var event : timeline.getEvents()) {
+      if (event.getType() == Type.PHASE) {
+        gauge(METRIC_PREFIX + "previous.phase.duration", TAG_PHASE, event.getName()).set(event.getDurationMs());
+      } else if (event.getType() == Type.GREEN_LIGHT) {
+        gauge(METRIC_PREFIX + "previous.strategy.time.to.green.light", TAG_STRATEGY, event.getStrategy()).set(event.getDurationMs());
+      }
+    }
+  }
+
+  private AtomicLong gauge(String name, String tagKey, String tagValue) {
+    return gaugeValues.computeIfAbsent(name + "|" + tagValue, key -> {
+      var value = new AtomicLong();
+      Gauge.builder(name, value, AtomicLong::get).tag(tagKey, tagValue).register(meterRegistry);
+      return value;
+    });
+  }
+}
@@ -0,0 +1,14 @@
+package com.transferwise.common.gracefulshutdown.timeline;
+
+public final class ShutdownPhases {
+
+  public static final String PREPARE_FOR_SHUTDOWN = "prepareForShutdown";
+  public static final String CLIENTS_REACTION = "clientsReaction";
+  public static final String CLIENT_REACTION_TIME_PASSED = "clientReactionTimePassed";
+  public static final String DRAIN = "drain";
+  public static final String APPLICATION_TERMINATING = "applicationTerminating";
+  public static final String TOTAL = "total";
+
+  private ShutdownPhases() {
+  }
+}
@@ -0,0 +1,132 @@
+package com.transferwise.common.gracefulshutdown.timeline;
+
+import com.transferwise.common.gracefulshutdown.GracefulShutdownStrategy;
+import com.transferwise.common.gracefulshutdown.timeline.ShutdownTimelineEvent.Outcome;
+import com.transferwise.common.gracefulshutdown.timeline.ShutdownTimelineEvent.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Everything, what has happened during a shutdown.
+ *
+ * <p>Thread safe, hooks are recording their events from multiple threads.
+ */
+@Slf4j
+public class ShutdownTimeline {
+
+  /**
+   * Keeps the persisted timeline small, even when strategies stay red for a long time. Listeners are still notified about every event.
+   */
+  static final int MAX_STORED_EVENTS = 1000;
+
+  @Getter
+  private final long startTimeEpochMs;
+
+  private final long startTimeNs;
+
+  private final List<ShutdownTimelineEvent> events = new ArrayList<>();
+
+  private final List<ShutdownTimelineListener> listeners;
+
+  private int droppedEventsCount;
+
+  @Getter
+  private volatile boolean finished;
+
+  public ShutdownTimeline(List<ShutdownTimelineListener> listeners) {
+    this.startTimeEpochMs = System.currentTimeMillis();
+    this.startTimeNs = System.nanoTime();
+    this.listeners = listeners;
+  }
+
+  ShutdownTimeline(long startTimeEpochMs, List<ShutdownTimelineEvent> events) {
+    this.startTimeEpochMs = startTimeEpochMs;
+    this.startTimeNs = 0;
+    this.listeners = Collections.emptyList();
+    this.events.addAll(events);
+    this.finished = true;
+  }
+
+  public void recordPhase(String phase, long startNs, long endNs) {
+    record(new ShutdownTimelineEvent(Type.PHASE, phase, null, offsetMs(startNs), toMs(endNs - startNs), Outcome.SUCCESS, 0));
+  }
+
+  public void recordHook(String hook, GracefulShutdownStrategy strategy, long startNs, long endNs, Outcome outcome) {
+    record(new ShutdownTimelineEvent(Type.HOOK, hook, getStrategyName(strategy), offsetMs(startNs), toMs(endNs - startNs), outcome, 0));
+  }
+
+  /**
+   * Records the time, from the start of the shutdown, it took for a strategy to give a green light.
+   */
+  public void recordGreenLight(GracefulShutdownStrategy strategy, long atNs, int redLightIterations, Outcome outcome) {
+    long offsetMs = offsetMs(atNs);
+    record(new ShutdownTimelineEvent(Type.GREEN_LIGHT, "canShutdown", getStrategyName(strategy), offsetMs, offsetMs, outcome,
+        redLightIterations));
+  }
+
+  public void finish() {
+    finished = true;
+  }
+
+  public List<ShutdownTimelineEvent> getEvents() {
+    synchronized (events) {
+      return new ArrayList<>(events);
+    }
+  }
+
+  public int getDroppedEventsCount() {
+    synchronized (events) {
+      return droppedEventsCount;
+    }
+  }
+
+  /**
+   * Returns the duration of the whole shutdown, or -1 when it has not finished.
+   */
+  public long getDurationMs() {
+    synchronized (events) {
+      for (var event : events) {
+        if (event.getType() == Type.PHASE && ShutdownPhases.TOTAL.equals(event.getName())) {
+          return event.getDurationMs();
+        }
+      }
+    }
+    return -1;
+  }
+
+  public static String getStrategyName(GracefulShutdownStrategy strategy) {
+    var clazz = ClassUtils.getUserClass(strategy);
+    return clazz.getSimpleName().isEmpty() ? clazz.getName() : clazz.getSimpleName();
+  }
+
+  private void record(ShutdownTimelineEvent event) {
+    synchronized (events) {
+      if (events.size() < MAX_STORED_EVENTS) {
+        events.add(event);
+      } else {
+        droppedEventsCount++;
+      }
+    }
+
+    for (var listener : listeners) {
+      try {
+        listener.onEvent(event);
+      } catch (Throwable t) {
+        log.error("Shutdown timeline listener '{}' failed.", listener, t);
+      }
+    }
+  }
+
+  private long offsetMs(long nanoTime) {
+    return toMs(nanoTime - startTimeNs);
+  }
+
+  private static long toMs(long nanos) {
+    return TimeUnit.NANOSECONDS.toMillis(nanos);
+  }
+}
@@ -0,0 +1,55 @@
+package com.transferwise.common.gracefulshutdown.timeline;
+
+import lombok.Value;
+
+@Value
+public class ShutdownTimelineEvent {
+
+  public enum Type {
+    /**
+     * A phase of the whole shutdown, e.g. waiting for clients to react.
+     */
+    PHASE,
+    /**
+     * A single hook call of a single strategy.
+     */
+    HOOK,
+    /**
+     * A strategy has given a green light, or has failed to do so in time.
+     */
+    GREEN_LIGHT
+  }
+
+  public enum Outcome {
+    SUCCESS,
+    FAILURE,
+    TIMEOUT,
+    /**
+     * The wait was given up before the deadline, as the drain was not estimated to finish in time.
+     */
+    ESCALATED
+  }
+
+  Type type;
+
+  String name;
+
+  /**
+   * Name of the strategy, null for phases.
+   */
+  String strategy;
+
+  /**
+   * Milliseconds from the start of the shutdown.
+   */
+  long startOffsetMs;
+
+  long durationMs;
+
+  Outcome outcome;
+
+  /**
+   * How many times the strategy has reported a red light, only set for {@link Type#GREEN_LIGHT} events.
+   */
+  int redLightIterations;
+}
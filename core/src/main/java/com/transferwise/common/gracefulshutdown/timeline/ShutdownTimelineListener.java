@@ -0,0 +1,15 @@
+package com.transferwise.common.gracefulshutdown.timeline;
+
+/**
+ * Gets notified about everything happening during the shutdown, e.g. for publishing metrics.
+ */
+public interface ShutdownTimelineListener {
+
+  void onEvent(ShutdownTimelineEvent event);
+
+  /**
+   * Called on startup, with the timeline of the previous process' shutdown, if it was persisted.
+   */
+  default void onPreviousTimeline(ShutdownTimeline timeline) {
+  }
+}
@@ -0,0 +1,138 @@
+package com.transferwise.common.gracefulshutdown.timeline;
+
+import com.transferwise.common.gracefulshutdown.config.GracefulShutdownProperties;
+import com.transferwise.common.gracefulshutdown.timeline.ShutdownTimelineEvent.Outcome;
+import com.transferwise.common.gracefulshutdown.timeline.ShutdownTimelineEvent.Type;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.util.StringUtils;
+
+/**
+ * Keeps the timeline of the current or the most recent shutdown, and persists it for the next process start.
+ */
+@Slf4j
+public class ShutdownTimelineRecorder implements SmartInitializingSingleton {
+
+  private static final String FILE_HEADER = "# tw-graceful-shutdown timeline v1";
+  private static final String START_TIME_KEY = "startTimeEpochMs";
+  private static final String NULL_VALUE = "-";
+  private static final String SEPARATOR = "\t";
+
+  @Autowired
+  private GracefulShutdownProperties properties;
+
+  @Autowired
+  private ObjectProvider<ShutdownTimelineListener> listeners;
+
+  @Getter
+  private volatile ShutdownTimeline currentTimeline;
+
+  @Getter
+  private volatile ShutdownTimeline previousTimeline;
+
+  @Override
+  public void afterSingletonsInstantiated() {
+    var file = getTimelineFile();
+    if (file == null || !Files.exists(file)) {
+      return;
+    }
+
+    try {
+      previousTimeline = read(file);
+      Files.deleteIfExists(file);
+    } catch (Throwable t) {
+      log.warn("Could not read the timeline of the previous shutdown from '{}'.", file, t);
+      return;
+    }
+
+    log.info("Previous graceful shutdown took {} ms, phases: {}.", previousTimeline.getDurationMs(),
+        previousTimeline.getEvents().stream().filter(event -> event.getType() == Type.PHASE)
+            .map(event -> event.getName() + "=" + event.getDurationMs() + "ms").collect(Collectors.joining(", ")));
+    for (var listener : getListeners()) {
+      try {
+        listener.onPreviousTimeline(previousTimeline);
+      } catch (Throwable t) {
+        log.error("Shutdown timeline listener '{}' failed.", listener, t);
+      }
+    }
+  }
+
+  public ShutdownTimeline startTimeline() {
+    currentTimeline = new ShutdownTimeline(getListeners());
+    return currentTimeline;
+  }
+
+  public void finishTimeline(ShutdownTimeline timeline) {
+    timeline.finish();
+
+    var file = getTimelineFile();
+    if (file == null) {
+      return;
+    }
+    try {
+      write(timeline, file);
+    } catch (Throwable t) {
+      log.warn("Could not write the shutdown timeline to '{}'.", file, t);
+    }
+  }
+
+  protected List<ShutdownTimelineListener> getListeners() {
+    return listeners.orderedStream().collect(Collectors.toList());
+  }
+
+  private Path getTimelineFile() {
+    var timelineFile = properties.getTimelineFile();
+    return StringUtils.hasText(timelineFile) ? Paths.get(timelineFile) : null;
+  }
+
+  static void write(ShutdownTimeline timeline, Path file) throws IOException {
+    var lines = new ArrayList<String>();
+    lines.add(FILE_HEADER);
+    lines.add(START_TIME_KEY + SEPARATOR + timeline.getStartTimeEpochMs());
+    for (var event : timeline.getEvents()) {
+      lines.add(String.join(SEPARATOR, event.getType().name(), event.getName(),
+          event.getStrategy() == null ? NULL_VALUE : event.getStrategy(), String.valueOf(event.getStartOffsetMs()),
+          String.valueOf(event.getDurationMs()), event.getOutcome().name(), String.valueOf(event.getRedLightIterations())));
+    }
+
+    // Write and move, so a half written file is never read.
+    var tmpFile = file.resolveSibling(file.getFileName() + ".tmp");
+    Files.write(tmpFile, lines, StandardCharsets.UTF_8);
+    Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  static ShutdownTimeline read(Path file) throws IOException {
+    var lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+    if (lines.size() < 2 || !FILE_HEADER.equals(lines.get(0))) {
+      throw new IllegalStateException("Unknown shutdown timeline file format.");
+    }
+
+    var startTime = lines.get(1).split(SEPARATOR);
+    if (startTime.length != 2 || !START_TIME_KEY.equals(startTime[0])) {
+      throw new IllegalStateException("Shutdown timeline file is missing the start time.");
+    }
+
+    var events = new ArrayList<ShutdownTimelineEvent>();
+    for (int i = 2; i < lines.size() && events.size() < ShutdownTimeline.MAX_STORED_EVENTS; i++) {
+      var fields = lines.get(i).split(SEPARATOR);
+      if (fields.length != 7) {
+        throw new IllegalStateException("Invalid shutdown timeline event '" + lines.get(i) + "'.");
+      }
+      events.add(new ShutdownTimelineEvent(Type.valueOf(fields[0]), fields[1], NULL_VALUE.equals(fields[2]) ? null : fields[2],
+          Long.parseLong(fields[3]), Long.parseLong(fields[4]), Outcome.valueOf(fields[5]), Integer.parseInt(fields[6])));
+    }
+    return new ShutdownTimeline(Long.parseLong(startTime[1]), events);
+  }
+}
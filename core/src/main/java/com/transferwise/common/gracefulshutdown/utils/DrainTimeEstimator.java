@@ -0,0 +1,125 @@
+package com.transferwise.common.gracefulshutdown.utils;
+
+/**
+ * Estimates how long it takes until nothing is in flight anymore, once no new operations are accepted.
+ *
+ * <p>In-flight operations of a drain are modelled as an exponential decay, {@code n(t) = n0 * e^(-rate * t)}. The rate is fitted by least
+ * squares over {@code ln(n)} of the samples, and blended with the rate known from the mean duration of operations before the drain, which
+ * is {@code 1 / meanDuration} for exponentially distributed durations. The prior dominates the first samples, the fit takes over as samples
+ * are added. The drain is considered done, when less than half an operation is expected to be left.
+ *
+ * <p>Not meant for hot paths, methods are synchronized, as samples are added by the shutdown thread and estimates read by others.
+ */
+public class DrainTimeEstimator {
+
+  /**
+   * The estimate, when in-flight operations are not decaying at all.
+   */
+  public static final long NOT_DRAINING = Long.MAX_VALUE;
+
+  /**
+   * The estimate, when there is nothing to base it on.
+   */
+  public static final long UNKNOWN = -1;
+
+  private static final int MAX_SAMPLES = 32;
+
+  /**
+   * How many samples the prior rate is worth.
+   */
+  private static final double PRIOR_WEIGHT = 2;
+
+  private static final double NANOS_PER_SECOND = 1e9;
+
+  private final long[] sampleNanos = new long[MAX_SAMPLES];
+
+  private final long[] sampleCounts = new long[MAX_SAMPLES];
+
+  private int samplesCount;
+
+  private int nextSample;
+
+  private double priorRate = Double.NaN;
+
+  /**
+   * Sets the mean duration of operations observed before the drain.
+   */
+  public synchronized void setMeanDurationNanos(double meanDurationNanos) {
+    priorRate = meanDurationNanos > 0 ? NANOS_PER_SECOND / meanDurationNanos : Double.NaN;
+  }
+
+  /**
+   * Adds the number of operations in flight at the given `System.nanoTime()`, the oldest samples are dropped after a while.
+   */
+  public synchronized void addSample(long nanos, long inFlight) {
+    sampleNanos[nextSample] = nanos;
+    sampleCounts[nextSample] = inFlight;
+    nextSample = (nextSample + 1) % MAX_SAMPLES;
+    samplesCount = Math.min(samplesCount + 1, MAX_SAMPLES);
+  }
+
+  /**
+   * Returns the estimated time from the last sample until the drain is done.
+   *
+   * @return {@link #UNKNOWN}, when there are no samples or neither enough samples nor a prior, {@link #NOT_DRAINING}, when nothing is
+   *     decaying
+   */
+  public synchronized long estimateRemainingNanos() {
+    if (samplesCount == 0) {
+      return UNKNOWN;
+    }
+    long latestCount = sampleCounts[(nextSample - 1 + MAX_SAMPLES) % MAX_SAMPLES];
+    if (latestCount == 0) {
+      return 0;
+    }
+
+    double rate = blendedRate();
+    if (Double.isNaN(rate)) {
+      return UNKNOWN;
+    }
+    if (rate <= 0) {
+      return NOT_DRAINING;
+    }
+    double remainingNanos = Math.log(2.0 * latestCount) / rate * NANOS_PER_SECOND;
+    return remainingNanos >= NOT_DRAINING ? NOT_DRAINING : (long) remainingNanos;
+  }
+
+  /**
+   * Decay rate per second, NaN when not known.
+   */
+  private double blendedRate() {
+    // Samples with nothing in flight tell nothing about the decay, ln(0) is not defined anyway.
+    int oldest = (nextSample - samplesCount + MAX_SAMPLES) % MAX_SAMPLES;
+    long originNanos = sampleNanos[oldest];
+    int n = 0;
+    double sumT = 0;
+    double sumY = 0;
+    double sumTt = 0;
+    double sumTy = 0;
+    for (int i = 0; i < samplesCount; i++) {
+      int idx = (oldest + i) % MAX_SAMPLES;
+      if (sampleCounts[idx] <= 0) {
+        continue;
+      }
+      double t = (sampleNanos[idx] - originNanos) / NANOS_PER_SECOND;
+      double y = Math.log(sampleCounts[idx]);
+      n++;
+      sumT += t;
+      sumY += y;
+      sumTt += t * t;
+      sumTy += t * y;
+    }
+
+    double denominator = n * sumTt - sumT * sumT;
+    if (n < 2 || denominator <= 0) {
+      return priorRate;
+    }
+    // Growing counts are not a negative drain, those just do not show any decay.
+    double fittedRate = Math.max(0, -(n * sumTy - sumT * sumY) / denominator);
+    if (Double.isNaN(priorRate)) {
+      return fittedRate;
+    }
+    double evidence = n - 1;
+    return (PRIOR_WEIGHT * priorRate + evidence * fittedRate) / (PRIOR_WEIGHT + evidence);
+  }
+}
@@ -85,6 +85,23 @@ public abstract class ExecutorShutdownUtils {
     }
   }
 
+  /**
+   * Returns the {@link ExecutorService} actually running the tasks of the executor.
+   *
+   * @param executor {@link Executor} to resolve
+   * @return the executor service, or null for unknown executors
+   */
+  public static ExecutorService getExecutorService(Executor executor) {
+    if (executor instanceof ThreadPoolTaskScheduler) {
+      return ((ThreadPoolTaskScheduler) executor).getScheduledThreadPoolExecutor();
+    } else if (executor instanceof ConcurrentTaskScheduler) {
+      return getExecutorService(((ConcurrentTaskScheduler) executor).getConcurrentExecutor());
+    } else if (executor instanceof ExecutorService) {
+      return (ExecutorService) executor;
+    }
+    return null;
+  }
+
   /**
    * Will try to get <b>shutdown()</b> method with reflection and run it on provided Object.
    *
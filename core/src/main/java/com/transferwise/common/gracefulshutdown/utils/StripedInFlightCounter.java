@@ -0,0 +1,104 @@
+package com.transferwise.common.gracefulshutdown.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts in-flight operations without a single contended cache line.
+ *
+ * <p>Every stripe has two monotonic cells, started and finished operations, on its own cache line. A thread only updates the stripe picked
+ * by its id, so threads mostly do not share cache lines. An operation may finish on a different thread, and so in a different stripe, than
+ * it has started, that is why we do not keep a single in-flight value per stripe.
+ *
+ * <p>{@link #getInFlight()} sums all finished cells first and all started cells after that. Every finish is preceded by its start, so the
+ * result is never negative, and 0 means that there was a moment, at the end of summing finished cells, when nothing was in flight. This
+ * makes the "is drained" check exact, without any locking on the hot path.
+ */
+public class StripedInFlightCounter {
+
+  // 128 bytes between stripes, covers adjacent cache line prefetching as well.
+  private static final int STRIPE_LENGTH = 16;
+  private static final int STARTED_OFFSET = 0;
+  private static final int FINISHED_OFFSET = 1;
+  private static final int MAX_STRIPES = 256;
+  private static final long SAMPLE_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final int stripesMask;
+
+  private final AtomicLongArray cells;
+
+  private final AtomicLong sampleNanos = new AtomicLong(System.nanoTime() - SAMPLE_INTERVAL_NANOS);
+
+  private volatile long sampledInFlight;
+
+  public StripedInFlightCounter() {
+    this(Runtime.getRuntime().availableProcessors() * 2);
+  }
+
+  public StripedInFlightCounter(int minStripes) {
+    int stripes = 1;
+    while (stripes < minStripes && stripes < MAX_STRIPES) {
+      stripes <<= 1;
+    }
+    this.stripesMask = stripes - 1;
+    this.cells = new AtomicLongArray(stripes * STRIPE_LENGTH);
+  }
+
+  public void started() {
+    cells.getAndIncrement(currentStripeOffset() + STARTED_OFFSET);
+  }
+
+  public void finished() {
+    cells.getAndIncrement(currentStripeOffset() + FINISHED_OFFSET);
+  }
+
+  /**
+   * Returns the number of in-flight operations.
+   *
+   * <p>Linear in the number of stripes, so meant for drain checks and reporting, not for the hot path.
+   */
+  public long getInFlight() {
+    long finished = sum(FINISHED_OFFSET);
+    long started = sum(STARTED_OFFSET);
+    return started - finished;
+  }
+
+  /**
+   * Returns {@link #getInFlight()} as sampled at most a millisecond ago, for admission checks on the hot path.
+   *
+   * <p>Only the thread winning the race for a new sample sums the stripes, everyone else reads the last sample. Operations started since
+   * the sample are not seen, so admissions relying on it can overshoot a little during bursts.
+   *
+   * @param nowNanos current {@link System#nanoTime()}
+   */
+  public long getInFlightSampled(long nowNanos) {
+    long last = sampleNanos.get();
+    if (nowNanos - last >= SAMPLE_INTERVAL_NANOS && sampleNanos.compareAndSet(last, nowNanos)) {
+      sampledInFlight = getInFlight();
+    }
+    return sampledInFlight;
+  }
+
+  /**
+   * Returns the number of all operations ever started.
+   */
+  public long getStarted() {
+    return sum(STARTED_OFFSET);
+  }
+
+  private long sum(int cellOffset) {
+    long result = 0;
+    for (int stripe = 0; stripe <= stripesMask; stripe++) {
+      result += cells.get(stripe * STRIPE_LENGTH + cellOffset);
+    }
+    return result;
+  }
+
+  @SuppressWarnings("deprecation")
+  private int currentStripeOffset() {
+    // Fibonacci hashing spreads sequential thread ids over the stripes.
+    long hash = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+    return ((int) (hash >>> 32) & stripesMask) * STRIPE_LENGTH;
+  }
+}
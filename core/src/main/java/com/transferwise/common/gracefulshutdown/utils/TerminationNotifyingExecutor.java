@@ -0,0 +1,17 @@
+package com.transferwise.common.gracefulshutdown.utils;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * An executor telling the moment it has terminated.
+ *
+ * <p>Resource strategies complete the shutdown of such an executor right at its termination, without checking its termination status
+ * periodically, and without a thread waiting for it.
+ */
+public interface TerminationNotifyingExecutor {
+
+  /**
+   * Completes, when the executor has terminated, i.e. after all tasks have completed following a shutdown.
+   */
+  CompletionStage<Void> getTermination();
+}
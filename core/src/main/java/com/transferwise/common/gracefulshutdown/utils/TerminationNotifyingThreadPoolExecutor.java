@@ -0,0 +1,49 @@
+package com.transferwise.common.gracefulshutdown.utils;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ThreadPoolExecutor} completing its {@link #getTermination()} from the {@link ThreadPoolExecutor#terminated()} hook.
+ *
+ * <p>Subclasses overriding {@link #terminated()} have to call the super method.
+ */
+public class TerminationNotifyingThreadPoolExecutor extends ThreadPoolExecutor implements TerminationNotifyingExecutor {
+
+  private final CompletableFuture<Void> termination = new CompletableFuture<>();
+
+  public TerminationNotifyingThreadPoolExecutor(int corePoolSize, int maximumPoolSize, long keepAliveTime, TimeUnit unit,
+      BlockingQueue<Runnable> workQueue) {
+    super(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue);
+  }
+
+  public TerminationNotifyingThreadPoolExecutor(int corePoolSize, int maximumPoolSize, long keepAliveTime, TimeUnit unit,
+      BlockingQueue<Runnable> workQueue, ThreadFactory threadFactory) {
+    super(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue, threadFactory);
+  }
+
+  public TerminationNotifyingThreadPoolExecutor(int corePoolSize, int maximumPoolSize, long keepAliveTime, TimeUnit unit,
+      BlockingQueue<Runnable> workQueue, ThreadFactory threadFactory, RejectedExecutionHandler handler) {
+    super(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue, threadFactory, handler);
+  }
+
+  @Override
+  protected void terminated() {
+    try {
+      super.terminated();
+    } finally {
+      termination.complete(null);
+    }
+  }
+
+  @Override
+  public CompletionStage<Void> getTermination() {
+    // Callers can not complete or cancel it.
+    return termination.minimalCompletionStage();
+  }
+}
@@ -0,0 +1,296 @@
+package com.transferwise.common.gracefulshutdown.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Matches URIs against a list of Ant-style patterns, compiled once into a deterministic automaton.
+ *
+ * <p>Supported patterns:
+ * <ul>
+ *   <li>`/actuator/health` - exact match</li>
+ *   <li>`?` - any single character, except `/`</li>
+ *   <li>`*` - zero or more characters, except `/`, e.g. `/actuator/*`</li>
+ *   <li>`**` as a whole path segment - zero or more path segments, e.g. `/actuator/health/**` matches `/actuator/health` and everything
+ *   below it</li>
+ * </ul>
+ *
+ * <p>Matching is a single pass over the URI, one table lookup per character, and does not allocate. URIs are expected as returned by
+ * `HttpServletRequest.getRequestURI()`, i.e. not decoded, so patterns can only contain ASCII characters.
+ */
+public final class UriPatternMatcher {
+
+  public static final int NO_MATCH = -1;
+
+  // Enough for hundreds of patterns, protects the startup from pathological ones.
+  private static final int MAX_STATES = 10_000;
+  private static final int ASCII_SIZE = 128;
+  private static final int DEAD_STATE = -1;
+
+  private static final UriPatternMatcher EMPTY = new UriPatternMatcher(new String[0]);
+
+  private final List<String> patterns;
+  private final byte[] asciiCharClasses;
+  private final int otherCharClass;
+  private final int charClassesCount;
+  private final int[] transitions;
+  private final int[] acceptedPatterns;
+
+  private UriPatternMatcher(String[] patterns) {
+    this.patterns = List.of(patterns);
+
+    // Every literal character of the patterns gets its own class, all the others share one.
+    asciiCharClasses = new byte[ASCII_SIZE];
+    int classes = 1;
+    asciiCharClasses['/'] = (byte) classes++;
+    for (var pattern : patterns) {
+      for (int i = 0; i < pattern.length(); i++) {
+        char c = pattern.charAt(i);
+        if (c >= ASCII_SIZE) {
+          throw new IllegalArgumentException("URI pattern '" + pattern + "' contains a non ASCII character.");
+        }
+        if (c != '*' && c != '?' && asciiCharClasses[c] == 0) {
+          asciiCharClasses[c] = (byte) classes++;
+        }
+      }
+    }
+    otherCharClass = 0;
+    charClassesCount = classes;
+
+    var nfa = new Nfa(charClassesCount, asciiCharClasses['/']);
+    var startStates = new ArrayList<Integer>();
+    for (int i = 0; i < patterns.length; i++) {
+      startStates.add(nfa.addPattern(patterns[i], i, asciiCharClasses));
+    }
+
+    var dfaTransitions = new ArrayList<int[]>();
+    var dfaAccepted = new ArrayList<Integer>();
+    Map<BitSet, Integer> dfaStates = new HashMap<>();
+    var queue = new ArrayList<BitSet>();
+
+    var start = new BitSet();
+    startStates.forEach(start::set);
+    start = nfa.closure(start);
+    dfaStates.put(start, 0);
+    queue.add(start);
+
+    for (int dfaState = 0; dfaState < queue.size(); dfaState++) {
+      var nfaStates = queue.get(dfaState);
+      dfaAccepted.add(nfa.acceptedPattern(nfaStates));
+      var row = new int[charClassesCount];
+      for (int charClass = 0; charClass < charClassesCount; charClass++) {
+        var next = nfa.step(nfaStates, charClass);
+        if (next.isEmpty()) {
+          row[charClass] = DEAD_STATE;
+          continue;
+        }
+        var nextDfaState = dfaStates.get(next);
+        if (nextDfaState == null) {
+          if (queue.size() >= MAX_STATES) {
+            throw new IllegalArgumentException("URI patterns " + this.patterns + " are too complex.");
+          }
+          nextDfaState = queue.size();
+          dfaStates.put(next, nextDfaState);
+          queue.add(next);
+        }
+        row[charClass] = nextDfaState;
+      }
+      dfaTransitions.add(row);
+    }
+
+    transitions = new int[dfaTransitions.size() * charClassesCount];
+    acceptedPatterns = new int[dfaTransitions.size()];
+    for (int i = 0; i < dfaTransitions.size(); i++) {
+      System.arraycopy(dfaTransitions.get(i), 0, transitions, i * charClassesCount, charClassesCount);
+      acceptedPatterns[i] = dfaAccepted.get(i);
+    }
+  }
+
+  public static UriPatternMatcher compile(Iterable<String> patterns) {
+    var list = new ArrayList<String>();
+    if (patterns != null) {
+      patterns.forEach(list::add);
+    }
+    return list.isEmpty() ? EMPTY : new UriPatternMatcher(list.toArray(new String[0]));
+  }
+
+  public static UriPatternMatcher compile(String... patterns) {
+    return compile(Arrays.asList(patterns));
+  }
+
+  /**
+   * Returns the index of the first pattern matching the URI, or {@link #NO_MATCH}.
+   */
+  public int match(String uri) {
+    if (uri == null) {
+      return NO_MATCH;
+    }
+    int state = 0;
+    for (int i = 0, length = uri.length(); i < length; i++) {
+      char c = uri.charAt(i);
+      state = transitions[state * charClassesCount + (c < ASCII_SIZE ? asciiCharClasses[c] : otherCharClass)];
+      if (state == DEAD_STATE) {
+        return NO_MATCH;
+      }
+    }
+    return acceptedPatterns[state];
+  }
+
+  public boolean matches(String uri) {
+    return match(uri) != NO_MATCH;
+  }
+
+  public List<String> getPatterns() {
+    return patterns;
+  }
+
+  @Override
+  public String toString() {
+    return "UriPatternMatcher" + patterns;
+  }
+
+  /**
+   * Nondeterministic automaton, only used during the compilation.
+   */
+  private static class Nfa {
+
+    private final int charClassesCount;
+    private final int slashCharClass;
+    private final List<BitSet[]> transitions = new ArrayList<>();
+    private final List<BitSet> epsilons = new ArrayList<>();
+    private final List<Integer> acceptedPatterns = new ArrayList<>();
+
+    Nfa(int charClassesCount, int slashCharClass) {
+      this.charClassesCount = charClassesCount;
+      this.slashCharClass = slashCharClass;
+    }
+
+    int addPattern(String pattern, int patternIndex, byte[] asciiCharClasses) {
+      int start = newState();
+      int current = start;
+      var segments = pattern.split("/", -1);
+      for (int s = 0; s < segments.length; s++) {
+        var segment = segments[s];
+        if (s == 0 && "**".equals(segment)) {
+          // Leading `**`, anything up to the rest of the pattern.
+          int next = newState();
+          for (int charClass = 0; charClass < charClassesCount; charClass++) {
+            addTransition(current, charClass, current);
+          }
+          addEpsilon(current, next);
+          current = next;
+          continue;
+        }
+        if (s > 0 && "**".equals(segment)) {
+          // Optional `/` followed by anything, the rest of the pattern can continue with its own `/`.
+          int any = newState();
+          int next = newState();
+          addTransition(current, slashCharClass, any);
+          for (int charClass = 0; charClass < charClassesCount; charClass++) {
+            addTransition(any, charClass, any);
+          }
+          addEpsilon(any, next);
+          addEpsilon(current, next);
+          current = next;
+          continue;
+        }
+        if (s > 0) {
+          current = addStep(current, slashCharClass);
+        }
+        for (int i = 0; i < segment.length(); i++) {
+          char c = segment.charAt(i);
+          if (c == '*') {
+            int next = newState();
+            for (int charClass = 0; charClass < charClassesCount; charClass++) {
+              if (charClass != slashCharClass) {
+                addTransition(current, charClass, current);
+              }
+            }
+            addEpsilon(current, next);
+            current = next;
+          } else if (c == '?') {
+            int next = newState();
+            for (int charClass = 0; charClass < charClassesCount; charClass++) {
+              if (charClass != slashCharClass) {
+                addTransition(current, charClass, next);
+              }
+            }
+            current = next;
+          } else {
+            current = addStep(current, asciiCharClasses[c]);
+          }
+        }
+      }
+      acceptedPatterns.set(current, patternIndex);
+      return start;
+    }
+
+    BitSet closure(BitSet states) {
+      var result = (BitSet) states.clone();
+      var stack = new ArrayList<Integer>();
+      states.stream().forEach(stack::add);
+      while (!stack.isEmpty()) {
+        int state = stack.remove(stack.size() - 1);
+        var targets = epsilons.get(state);
+        for (int target = targets.nextSetBit(0); target >= 0; target = targets.nextSetBit(target + 1)) {
+          if (!result.get(target)) {
+            result.set(target);
+            stack.add(target);
+          }
+        }
+      }
+      return result;
+    }
+
+    BitSet step(BitSet states, int charClass) {
+      var result = new BitSet();
+      for (int state = states.nextSetBit(0); state >= 0; state = states.nextSetBit(state + 1)) {
+        var targets = transitions.get(state)[charClass];
+        if (targets != null) {
+          result.or(targets);
+        }
+      }
+      return closure(result);
+    }
+
+    int acceptedPattern(BitSet states) {
+      int result = NO_MATCH;
+      for (int state = states.nextSetBit(0); state >= 0; state = states.nextSetBit(state + 1)) {
+        int pattern = acceptedPatterns.get(state);
+        if (pattern != NO_MATCH && (result == NO_MATCH || pattern < result)) {
+          result = pattern;
+        }
+      }
+      return result;
+    }
+
+    private int newState() {
+      transitions.add(new BitSet[charClassesCount]);
+      epsilons.add(new BitSet());
+      acceptedPatterns.add(NO_MATCH);
+      return transitions.size() - 1;
+    }
+
+    private int addStep(int from, int charClass) {
+      int next = newState();
+      addTransition(from, charClass, next);
+      return next;
+    }
+
+    private void addTransition(int from, int charClass, int to) {
+      var row = transitions.get(from);
+      if (row[charClass] == null) {
+        row[charClass] = new BitSet();
+      }
+      row[charClass].set(to);
+    }
+
+    private void addEpsilon(int from, int to) {
+      epsilons.get(from).set(to);
+    }
+  }
+}
@@ -0,0 +1,60 @@
+package com.transferwise.common.gracefulshutdown.utils;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+public abstract class VirtualThreadsUtils {
+
+  private static final boolean supported = createVirtualThreadFactory("virtual-threads-probe-") != null;
+
+  /**
+   * Returns true, if the JVM supports virtual threads.
+   */
+  public static boolean isSupported() {
+    return supported;
+  }
+
+  /**
+   * Creates an executor, running every task in a new thread.
+   *
+   * <p>We are compiled against Java 17, so virtual threads are created with reflection, when the runtime supports those.
+   * Otherwise, a cached pool of daemon platform threads is used.
+   *
+   * @param threadNamePrefix   prefix for the names of created threads
+   * @param useVirtualThreads  use virtual threads, when supported
+   */
+  public static ExecutorService newThreadPerTaskExecutor(String threadNamePrefix, boolean useVirtualThreads) {
+    if (useVirtualThreads) {
+      var threadFactory = createVirtualThreadFactory(threadNamePrefix);
+      if (threadFactory != null) {
+        try {
+          return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class).invoke(null, threadFactory);
+        } catch (ReflectiveOperationException e) {
+          log.warn("Could not create a virtual threads executor, falling back to platform threads.", e);
+        }
+      }
+    }
+
+    return Executors.newCachedThreadPool(new ThreadFactoryBuilder().setDaemon(true).setNameFormat(threadNamePrefix + "%d").build());
+  }
+
+  private static ThreadFactory createVirtualThreadFactory(String threadNamePrefix) {
+    try {
+      var builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      // Methods have to be taken from the public interfaces, the builder implementations are not accessible.
+      builder = Class.forName("java.lang.Thread$Builder$OfVirtual").getMethod("name", String.class, long.class)
+          .invoke(builder, threadNamePrefix, 0L);
+      return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+    } catch (NoSuchMethodException | ClassNotFoundException e) {
+      // Normal for pre Java 21 runtimes.
+      return null;
+    } catch (ReflectiveOperationException e) {
+      log.debug("Virtual threads are not available.", e);
+      return null;
+    }
+  }
+}
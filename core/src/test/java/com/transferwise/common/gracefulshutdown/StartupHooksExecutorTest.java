@@ -0,0 +1,140 @@
+package com.transferwise.common.gracefulshutdown;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.transferwise.common.gracefulshutdown.config.GracefulShutdownProperties.StartupHooksProperties;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Test;
+
+class StartupHooksExecutorTest {
+
+  @Test
+  @SneakyThrows
+  void hooks_are_called_concurrently() {
+    var properties = new StartupHooksProperties();
+    properties.setConcurrent(true);
+    properties.setTimeoutMs(5_000);
+
+    // Both strategies only finish, when the other one has started as well.
+    var started = new CountDownLatch(2);
+    var first = new WaitingStrategy(started);
+    var second = new WaitingStrategy(started);
+
+    try (var executor = new StartupHooksExecutor(properties, "test-startup-hooks-")) {
+      executor.callApplicationStarted(List.of(first, second));
+    }
+
+    assertThat(first.finished.get()).isTrue();
+    assertThat(second.finished.get()).isTrue();
+  }
+
+  @Test
+  @SneakyThrows
+  void failure_cancels_other_hooks_and_fails_fast() {
+    var properties = new StartupHooksProperties();
+    properties.setConcurrent(true);
+    properties.setTimeoutMs(30_000);
+
+    var hanging = new WaitingStrategy(new CountDownLatch(2));
+    GracefulShutdownStrategy failing = new GracefulShutdownStrategy() {
+      @Override
+      public void applicationStarted() {
+        throw new IllegalArgumentException("Warm up failed.");
+      }
+
+      @Override
+      public boolean canShutdown() {
+        return true;
+      }
+    };
+
+    long startTimeMs = System.currentTimeMillis();
+    try (var executor = new StartupHooksExecutor(properties, "test-startup-hooks-")) {
+      assertThatThrownBy(() -> executor.callApplicationStarted(List.of(hanging, failing)))
+          .isInstanceOf(IllegalStateException.class)
+          .hasRootCauseInstanceOf(IllegalArgumentException.class);
+    }
+
+    assertThat(System.currentTimeMillis() - startTimeMs).isLessThan(10_000);
+    assertThat(hanging.finished.get()).isFalse();
+  }
+
+  @Test
+  @SneakyThrows
+  void opted_out_strategy_is_called_alone() {
+    var properties = new StartupHooksProperties();
+    properties.setConcurrent(true);
+
+    var running = new AtomicInteger();
+    var maxRunning = new AtomicInteger();
+    var maxRunningWithAlone = new AtomicInteger();
+    GracefulShutdownStrategy alone = new CountingStrategy(running, maxRunningWithAlone) {
+      @Override
+      public boolean isApplicationStartedConcurrent() {
+        return false;
+      }
+    };
+
+    try (var executor = new StartupHooksExecutor(properties, "test-startup-hooks-")) {
+      executor.callApplicationStarted(List.of(new CountingStrategy(running, maxRunning), new CountingStrategy(running, maxRunning), alone,
+          new CountingStrategy(running, maxRunning)));
+    }
+
+    assertThat(maxRunning.get()).isEqualTo(2);
+    assertThat(maxRunningWithAlone.get()).isEqualTo(1);
+  }
+
+  private static class WaitingStrategy implements GracefulShutdownStrategy {
+
+    private final CountDownLatch started;
+    private final AtomicBoolean finished = new AtomicBoolean();
+
+    WaitingStrategy(CountDownLatch started) {
+      this.started = started;
+    }
+
+    @Override
+    @SneakyThrows
+    public void applicationStarted() {
+      started.countDown();
+      if (started.await(20, TimeUnit.SECONDS)) {
+        finished.set(true);
+      }
+    }
+
+    @Override
+    public boolean canShutdown() {
+      return true;
+    }
+  }
+
+  private static class CountingStrategy implements GracefulShutdownStrategy {
+
+    private final AtomicInteger running;
+    private final AtomicInteger maxRunning;
+
+    CountingStrategy(AtomicInteger running, AtomicInteger maxRunning) {
+      this.running = running;
+      this.maxRunning = maxRunning;
+    }
+
+    @Override
+    @SneakyThrows
+    public void applicationStarted() {
+      maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+      Thread.sleep(200);
+      running.decrementAndGet();
+    }
+
+    @Override
+    public boolean canShutdown() {
+      return true;
+    }
+  }
+}
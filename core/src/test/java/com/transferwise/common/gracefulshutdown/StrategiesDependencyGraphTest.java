@@ -0,0 +1,99 @@
+package com.transferwise.common.gracefulshutdown;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class StrategiesDependencyGraphTest {
+
+  @Test
+  void dependent_strategies_are_released_after_dependencies_have_drained() {
+    var scheduler = new SchedulerStrategy();
+    var dataSource = new DataSourceStrategy();
+    var executor = new ExecutorStrategy();
+
+    var graph = StrategiesDependencyGraph.build(List.of(dataSource, scheduler, executor));
+
+    assertThat(graph.getIndependentStrategies()).containsExactly(scheduler, executor);
+
+    Set<GracefulShutdownStrategy> prepared = Collections.newSetFromMap(new IdentityHashMap<>());
+    Set<GracefulShutdownStrategy> green = Collections.newSetFromMap(new IdentityHashMap<>());
+    prepared.addAll(List.of(scheduler, executor));
+
+    green.add(executor);
+    assertThat(graph.findReleasable(prepared, green)).isEmpty();
+
+    green.add(scheduler);
+    assertThat(graph.findReleasable(prepared, green)).containsExactly(dataSource);
+  }
+
+  @Test
+  void cyclic_dependencies_are_ignored() {
+    var first = new CyclicStrategy(SecondCyclicStrategy.class);
+    var second = new SecondCyclicStrategy(CyclicStrategy.class);
+
+    var graph = StrategiesDependencyGraph.build(List.of(first, second));
+
+    assertThat(graph.getIndependentStrategies()).containsExactly(first, second);
+  }
+
+  private static class SchedulerStrategy implements GracefulShutdownStrategy {
+
+    @Override
+    public boolean canShutdown() {
+      return true;
+    }
+  }
+
+  private static class ExecutorStrategy implements GracefulShutdownStrategy {
+
+    @Override
+    public boolean canShutdown() {
+      return true;
+    }
+  }
+
+  private static class DataSourceStrategy implements GracefulShutdownStrategy {
+
+    @Override
+    public boolean canShutdown() {
+      return true;
+    }
+
+    @Override
+    public Collection<Class<?>> getShutdownDependencies() {
+      return List.of(SchedulerStrategy.class);
+    }
+  }
+
+  private static class CyclicStrategy implements GracefulShutdownStrategy {
+
+    private final Class<?> dependency;
+
+    CyclicStrategy(Class<?> dependency) {
+      this.dependency = dependency;
+    }
+
+    @Override
+    public boolean canShutdown() {
+      return true;
+    }
+
+    @Override
+    public Collection<Class<?>> getShutdownDependencies() {
+      return List.of(dependency);
+    }
+  }
+
+  private static class SecondCyclicStrategy extends CyclicStrategy {
+
+    SecondCyclicStrategy(Class<?> dependency) {
+      super(dependency);
+    }
+  }
+}
@@ -0,0 +1,133 @@
+package com.transferwise.common.gracefulshutdown;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.transferwise.common.gracefulshutdown.config.GracefulShutdownProperties.StrategyHooksProperties;
+import com.transferwise.common.gracefulshutdown.timeline.ShutdownTimeline;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Test;
+
+class StrategyHooksExecutorTest {
+
+  @Test
+  @SneakyThrows
+  void hanging_strategy_does_not_block_other_strategies() {
+    var properties = new StrategyHooksProperties();
+    properties.setConcurrent(true);
+    properties.setTimeoutMs(200);
+
+    var release = new CountDownLatch(1);
+    var fastStrategyCalled = new AtomicBoolean();
+    GracefulShutdownStrategy hangingStrategy = new GracefulShutdownStrategy() {
+      @Override
+      @SneakyThrows
+      public void prepareForShutdown() {
+        release.await();
+      }
+
+      @Override
+      public boolean canShutdown() {
+        return true;
+      }
+    };
+    GracefulShutdownStrategy fastStrategy = new GracefulShutdownStrategy() {
+      @Override
+      public void prepareForShutdown() {
+        fastStrategyCalled.set(true);
+      }
+
+      @Override
+      public boolean canShutdown() {
+        return true;
+      }
+    };
+
+    try (var hooksExecutor = new StrategyHooksExecutor(properties, "test-hooks-", new ShutdownTimeline(List.of()))) {
+      long startTimeMs = System.currentTimeMillis();
+      hooksExecutor.callHook(List.of(hangingStrategy, fastStrategy), "prepareForShutdown", GracefulShutdownStrategy::prepareForShutdown);
+
+      assertThat(fastStrategyCalled.get()).isTrue();
+      assertThat(System.currentTimeMillis() - startTimeMs).isLessThan(5_000);
+    } finally {
+      release.countDown();
+    }
+  }
+
+  @Test
+  @SneakyThrows
+  void timed_out_can_shutdown_is_treated_according_to_configuration() {
+    var release = new CountDownLatch(1);
+    GracefulShutdownStrategy hangingStrategy = () -> {
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return true;
+    };
+
+    var properties = new StrategyHooksProperties();
+    properties.setConcurrent(true);
+    properties.setTimeoutMs(100);
+
+    try (var hooksExecutor = new StrategyHooksExecutor(properties, "test-hooks-", new ShutdownTimeline(List.of()))) {
+      assertThat(hooksExecutor.findRedLightStrategies(List.of(hangingStrategy))).containsExactly(hangingStrategy);
+
+      properties.setTimedOutCanShutdown(true);
+      assertThat(hooksExecutor.findRedLightStrategies(List.of(hangingStrategy))).isEmpty();
+
+      release.countDown();
+      assertThat(hooksExecutor.findRedLightStrategies(List.of(hangingStrategy))).isEmpty();
+    } finally {
+      release.countDown();
+    }
+  }
+
+  @Test
+  @SneakyThrows
+  void next_hook_of_a_strategy_waits_for_its_timed_out_hook() {
+    var properties = new StrategyHooksProperties();
+    properties.setConcurrent(true);
+    properties.setTimeoutMs(100);
+
+    var release = new CountDownLatch(1);
+    var prepared = new AtomicBoolean();
+    var preparedBeforeReactionTimePassed = new AtomicBoolean();
+    var reactionTimePassed = new CountDownLatch(1);
+    GracefulShutdownStrategy slowStrategy = new GracefulShutdownStrategy() {
+      @Override
+      @SneakyThrows
+      public void prepareForShutdown() {
+        release.await();
+        prepared.set(true);
+      }
+
+      @Override
+      public void clientReactionTimePassed() {
+        preparedBeforeReactionTimePassed.set(prepared.get());
+        reactionTimePassed.countDown();
+      }
+
+      @Override
+      public boolean canShutdown() {
+        return true;
+      }
+    };
+
+    try (var hooksExecutor = new StrategyHooksExecutor(properties, "test-hooks-", new ShutdownTimeline(List.of()))) {
+      hooksExecutor.callHook(List.of(slowStrategy), "prepareForShutdown", GracefulShutdownStrategy::prepareForShutdown);
+      hooksExecutor.callHook(List.of(slowStrategy), "clientReactionTimePassed", GracefulShutdownStrategy::clientReactionTimePassed);
+      assertThat(reactionTimePassed.getCount()).isEqualTo(1);
+
+      release.countDown();
+      assertThat(reactionTimePassed.await(5, TimeUnit.SECONDS)).isTrue();
+      assertThat(preparedBeforeReactionTimePassed.get()).isTrue();
+    } finally {
+      release.countDown();
+    }
+  }
+}
@@ -1,12 +1,17 @@
 package com.transferwise.common.gracefulshutdown.strategies;
 
+import com.transferwise.common.gracefulshutdown.ShutdownDeadline;
 import com.transferwise.common.gracefulshutdown.config.GracefulShutdownProperties;
+import com.transferwise.common.gracefulshutdown.config.GracefulShutdownProperties.ResourcePolicyProperties;
+import com.transferwise.common.gracefulshutdown.utils.TerminationNotifyingThreadPoolExecutor;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
@@ -72,6 +77,26 @@ class ExecutorServiceGracefulShutdownStrategyTest {
     Awaitility.await().atMost(checkMaxWaitTime).until(strategy::canShutdown);
   }
 
+  @Test
+  public void drain_completion_is_signalled_when_resources_are_shut_down() {
+    // GIVEN
+    ExecutorServiceGracefulShutdownStrategy strategy = new ExecutorServiceGracefulShutdownStrategy(
+        new StaticApplicationContext(),
+        gracefulShutdownProperties
+    );
+    ExecutorService executorService = Executors.newFixedThreadPool(1);
+    strategy.addResource(executorService);
+    Assertions.assertFalse(strategy.getDrainCompletion().toCompletableFuture().isDone());
+
+    // WHEN
+    strategy.prepareForShutdown();
+
+    // THEN
+    Awaitility.await().atMost(checkMaxWaitTime).until(() -> strategy.getDrainCompletion().toCompletableFuture().isDone());
+    Assertions.assertTrue(executorService.isTerminated());
+    Assertions.assertTrue(strategy.canShutdown());
+  }
+
   @Test
   public void shutdown_timeout_is_applied_and_called_shutdownNow() {
     // GIVEN
@@ -101,6 +126,173 @@ class ExecutorServiceGracefulShutdownStrategyTest {
     Assertions.assertTrue(isInterrupted.get());
   }
 
+  @Test
+  public void shutdown_timeouts_are_sized_from_the_shutdown_deadline() {
+    // GIVEN
+    GracefulShutdownProperties properties = new GracefulShutdownProperties();
+    properties.setClientsReactionTimeMs(0);
+    properties.setShutdownTimeoutMs(1000);
+
+    AtomicBoolean isInterrupted = new AtomicBoolean(false);
+    ExecutorServiceGracefulShutdownStrategy strategy = new ExecutorServiceGracefulShutdownStrategy(
+        new StaticApplicationContext(),
+        properties
+    );
+    ExecutorService executorService = Executors.newFixedThreadPool(1);
+    strategy.addResource(executorService);
+    executorService.execute(() -> {
+      try {
+        Thread.sleep(5_000);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        isInterrupted.set(true);
+      }
+    });
+
+    // WHEN
+    // The task would be interrupted, if only `shutdownTimeoutMs` was available.
+    strategy.prepareForShutdown(ShutdownDeadline.afterMillis(15_000));
+
+    // THEN
+    Awaitility.await().atMost(checkMaxWaitTime).until(strategy::canShutdown);
+    Assertions.assertTrue(executorService.isTerminated());
+    Assertions.assertFalse(isInterrupted.get());
+  }
+
+  @Test
+  public void termination_of_executors_is_not_polled() {
+    // GIVEN
+    GracefulShutdownProperties properties = new GracefulShutdownProperties();
+    properties.setShutdownTimeoutMs(30_000);
+    // Polling would only notice the termination after this.
+    properties.setResourceCheckIntervalTimeMs(60_000);
+
+    ExecutorServiceGracefulShutdownStrategy strategy = new ExecutorServiceGracefulShutdownStrategy(
+        new StaticApplicationContext(),
+        properties
+    ) {
+      @Override
+      protected Duration getStrategyShutdownDelay() {
+        return Duration.ZERO;
+      }
+    };
+    ExecutorService executorService = Executors.newFixedThreadPool(1);
+    ExecutorService notifyingExecutorService = new TerminationNotifyingThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<>());
+    strategy.addResource(executorService);
+    strategy.addResource(notifyingExecutorService);
+    ExecutorService idleExecutorService = Executors.newFixedThreadPool(1);
+    strategy.addResource(idleExecutorService);
+    for (ExecutorService busyExecutorService : List.of(executorService, notifyingExecutorService)) {
+      busyExecutorService.execute(() -> {
+        try {
+          Thread.sleep(500);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      });
+    }
+
+    // WHEN
+    strategy.prepareForShutdown(ShutdownDeadline.afterMillis(30_000));
+
+    // THEN
+    Awaitility.await().atMost(Duration.ofSeconds(10)).until(strategy::canShutdown);
+    Assertions.assertTrue(executorService.isTerminated());
+    Assertions.assertTrue(notifyingExecutorService.isTerminated());
+    Assertions.assertTrue(idleExecutorService.isTerminated());
+  }
+
+  @Test
+  public void tiers_are_shut_down_in_sequence() {
+    // GIVEN
+    GracefulShutdownProperties properties = new GracefulShutdownProperties();
+    properties.setShutdownTimeoutMs(30_000);
+    var consumerPolicy = new ResourcePolicyProperties();
+    consumerPolicy.setTier(1);
+    properties.getResourceShutdown().getPolicies().put("consumer", consumerPolicy);
+
+    StaticApplicationContext applicationContext = new StaticApplicationContext();
+    ExecutorService producer = Executors.newFixedThreadPool(1);
+    ExecutorService consumer = Executors.newFixedThreadPool(1);
+    applicationContext.getBeanFactory().registerSingleton("producer", producer);
+    applicationContext.getBeanFactory().registerSingleton("consumer", consumer);
+    producer.execute(() -> {
+      try {
+        Thread.sleep(500);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+
+    AtomicBoolean producerTerminatedBeforeConsumerShutdown = new AtomicBoolean();
+    ExecutorServiceGracefulShutdownStrategy strategy = new ExecutorServiceGracefulShutdownStrategy(applicationContext, properties) {
+      @Override
+      protected Duration getStrategyShutdownDelay() {
+        return Duration.ZERO;
+      }
+
+      @Override
+      protected Mono<Void> shutdownResourceGraceful(@NonNull ExecutorService resource) {
+        if (resource == consumer) {
+          producerTerminatedBeforeConsumerShutdown.set(producer.isTerminated());
+        }
+        return super.shutdownResourceGraceful(resource);
+      }
+    };
+
+    // WHEN
+    strategy.prepareForShutdown(ShutdownDeadline.afterMillis(30_000));
+
+    // THEN
+    Awaitility.await().atMost(checkMaxWaitTime).until(strategy::canShutdown);
+    Assertions.assertTrue(consumer.isTerminated());
+    Assertions.assertTrue(producerTerminatedBeforeConsumerShutdown.get());
+  }
+
+  @Test
+  public void resources_not_drain_critical_are_not_waited_for() {
+    // GIVEN
+    GracefulShutdownProperties properties = new GracefulShutdownProperties();
+    properties.setShutdownTimeoutMs(30_000);
+    var policy = new ResourcePolicyProperties();
+    policy.setDrainCritical(false);
+    policy.setMaxGracefulTimeMs(2_000L);
+    properties.getResourceShutdown().getPolicies().put("reports", policy);
+
+    StaticApplicationContext applicationContext = new StaticApplicationContext();
+    ExecutorService executorService = Executors.newFixedThreadPool(1);
+    applicationContext.getBeanFactory().registerSingleton("reports", executorService);
+    AtomicBoolean isInterrupted = new AtomicBoolean(false);
+    executorService.execute(() -> {
+      try {
+        Thread.sleep(checkMaxWaitTime.toMillis());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        isInterrupted.set(true);
+      }
+    });
+
+    ExecutorServiceGracefulShutdownStrategy strategy = new ExecutorServiceGracefulShutdownStrategy(applicationContext, properties) {
+      @Override
+      protected Duration getStrategyShutdownDelay() {
+        return Duration.ZERO;
+      }
+    };
+
+    // WHEN
+    strategy.prepareForShutdown(ShutdownDeadline.afterMillis(30_000));
+
+    // THEN
+    Awaitility.await().atMost(Duration.ofSeconds(1)).until(strategy::canShutdown);
+    strategy.applicationTerminating();
+    // Still given its graceful budget, the shared scheduler is kept for it.
+    Awaitility.await().during(Duration.ofMillis(300)).atMost(Duration.ofMillis(600)).until(() -> !executorService.isTerminated());
+    // Forced after the graceful budget, instead of after 90% of the time left.
+    Awaitility.await().atMost(Duration.ofSeconds(10)).until(executorService::isTerminated);
+    Assertions.assertTrue(isInterrupted.get());
+  }
+
   @Test
   @Disabled("For development only")
   public void shutdown_runs_in_multiple_treads() {
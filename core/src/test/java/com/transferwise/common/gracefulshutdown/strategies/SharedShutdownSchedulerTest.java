@@ -0,0 +1,43 @@
+package com.transferwise.common.gracefulshutdown.strategies;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+class SharedShutdownSchedulerTest {
+
+  @Test
+  @SneakyThrows
+  void scheduler_is_shared_and_disposed_after_the_last_release() {
+    var sharedScheduler = new SharedShutdownScheduler();
+    assertThat(sharedScheduler.isActive()).isFalse();
+
+    var first = sharedScheduler.acquire(2, false);
+    var second = sharedScheduler.acquire(3, false);
+    assertThat(second).isSameAs(first);
+
+    var running = new CountDownLatch(1);
+    var release = new CountDownLatch(1);
+    var finished = Mono.fromCallable(() -> {
+      running.countDown();
+      return release.await(10, TimeUnit.SECONDS);
+    }).subscribeOn(first).toFuture();
+    assertThat(running.await(10, TimeUnit.SECONDS)).isTrue();
+
+    sharedScheduler.release();
+    assertThat(sharedScheduler.isActive()).isTrue();
+    sharedScheduler.release();
+    assertThat(sharedScheduler.isActive()).isFalse();
+
+    // Running tasks are not interrupted.
+    release.countDown();
+    assertThat(finished.get(10, TimeUnit.SECONDS)).isTrue();
+
+    assertThat(sharedScheduler.acquire(1, false)).isNotSameAs(first);
+    sharedScheduler.release();
+  }
+}
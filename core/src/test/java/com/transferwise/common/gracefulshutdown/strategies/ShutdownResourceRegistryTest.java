@@ -0,0 +1,79 @@
+package com.transferwise.common.gracefulshutdown.strategies;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+
+class ShutdownResourceRegistryTest {
+
+  @Test
+  void unregistered_resources_are_not_returned() {
+    var registry = new ShutdownResourceRegistry<Object>(resource -> false);
+    var kept = new Object();
+    var removed = new Object();
+    registry.register(kept);
+    var registration = registry.register(removed);
+
+    registration.unregister();
+    registration.unregister();
+
+    assertThat(registry.getResources()).containsExactly(kept);
+  }
+
+  @Test
+  void terminated_and_unregistered_resources_are_swept_while_registering() {
+    var registry = new ShutdownResourceRegistry<AtomicBoolean>(AtomicBoolean::get, 16);
+    var live = new AtomicBoolean();
+    registry.register(live);
+
+    for (int i = 0; i < 10_000; i++) {
+      var terminated = new AtomicBoolean();
+      registry.register(terminated);
+      terminated.set(true);
+      registry.register(new AtomicBoolean()).unregister();
+    }
+
+    assertThat(registry.getEntriesCount()).isLessThanOrEqualTo(2 * 16 + 1);
+    assertThat(registry.getResources()).containsExactly(live);
+  }
+
+  @Test
+  void resources_can_be_registered_concurrently() throws Exception {
+    var registry = new ShutdownResourceRegistry<Object>(resource -> false, 16);
+    int threads = 8;
+    int registrationsPerThread = 10_000;
+    List<Object> resources = new ArrayList<>();
+    for (int i = 0; i < threads * registrationsPerThread; i++) {
+      resources.add(new Object());
+    }
+    ExecutorService executorService = Executors.newFixedThreadPool(threads);
+    var start = new CountDownLatch(1);
+    try {
+      for (int t = 0; t < threads; t++) {
+        var threadResources = resources.subList(t * registrationsPerThread, (t + 1) * registrationsPerThread);
+        executorService.execute(() -> {
+          try {
+            start.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+          }
+          threadResources.forEach(registry::register);
+        });
+      }
+      start.countDown();
+    } finally {
+      executorService.shutdown();
+    }
+    assertThat(executorService.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+    assertThat(registry.getResources()).containsExactlyInAnyOrderElementsOf(resources);
+  }
+}
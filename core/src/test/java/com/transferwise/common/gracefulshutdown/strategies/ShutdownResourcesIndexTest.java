@@ -0,0 +1,97 @@
+package com.transferwise.common.gracefulshutdown.strategies;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.transferwise.common.gracefulshutdown.GracefulShutdownIgnore;
+import com.transferwise.common.gracefulshutdown.config.GracefulShutdownProperties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+class ShutdownResourcesIndexTest {
+
+  @Test
+  void resources_are_indexed_as_beans_are_created() {
+    try (var context = new AnnotationConfigApplicationContext(ResourcesConfiguration.class)) {
+      var index = context.getBean(ShutdownResourcesIndex.class);
+
+      assertThat(index.getResources(ExecutorService.class)).containsExactly(context.getBean("executor", ExecutorService.class));
+      assertThat(index.getResources(TaskScheduler.class)).containsExactly(context.getBean("taskScheduler", TaskScheduler.class));
+      assertThat(index.describe()).extracting(description -> description.get("beanName"))
+          .containsExactlyInAnyOrder("executor", "ignoredExecutor", "taskScheduler");
+      assertThat(index.describe()).filteredOn(description -> description.get("ignored").equals(true))
+          .extracting(description -> description.get("beanName")).containsExactly("ignoredExecutor");
+    }
+  }
+
+  @Test
+  void shutdown_does_not_scan_the_context() {
+    try (var context = new AnnotationConfigApplicationContext(ResourcesConfiguration.class)) {
+      var strategy = new ExecutorServiceGracefulShutdownStrategy(context, new GracefulShutdownProperties());
+      strategy.setResourcesIndex(context.getBean(ShutdownResourcesIndex.class));
+
+      assertThat(strategy.getResourcesForShutdown()).containsExactly(context.getBean("executor", ExecutorService.class));
+      assertThat(ResourcesConfiguration.lazyExecutorCreated).isFalse();
+    }
+  }
+
+  @Test
+  void singletons_missed_by_the_index_are_shut_down_as_well() {
+    ExecutorService registered = Executors.newSingleThreadExecutor();
+    try (var context = new AnnotationConfigApplicationContext()) {
+      context.register(ResourcesConfiguration.class);
+      context.getBeanFactory().registerSingleton("registered", registered);
+      context.refresh();
+      var index = context.getBean(ShutdownResourcesIndex.class);
+      var strategy = new ExecutorServiceGracefulShutdownStrategy(context, new GracefulShutdownProperties());
+      strategy.setResourcesIndex(index);
+
+      assertThat(strategy.getResourcesForShutdown()).containsExactlyInAnyOrder(context.getBean("executor", ExecutorService.class), registered);
+      assertThat(index.getBeanNames(ExecutorService.class)).containsEntry(registered, "registered");
+      assertThat(ResourcesConfiguration.lazyExecutorCreated).isFalse();
+    } finally {
+      registered.shutdownNow();
+    }
+  }
+
+  @Configuration
+  static class ResourcesConfiguration {
+
+    static final AtomicBoolean lazyExecutorCreated = new AtomicBoolean();
+
+    @Bean
+    static ShutdownResourcesIndex shutdownResourcesIndex() {
+      return new ShutdownResourcesIndex();
+    }
+
+    @Bean(destroyMethod = "shutdownNow")
+    ExecutorService executor() {
+      return Executors.newSingleThreadExecutor();
+    }
+
+    @Bean(destroyMethod = "shutdownNow")
+    @GracefulShutdownIgnore
+    ExecutorService ignoredExecutor() {
+      return Executors.newSingleThreadExecutor();
+    }
+
+    @Bean(destroyMethod = "shutdownNow")
+    @Lazy
+    ExecutorService lazyExecutor() {
+      lazyExecutorCreated.set(true);
+      return Executors.newSingleThreadExecutor();
+    }
+
+    @Bean
+    ThreadPoolTaskScheduler taskScheduler() {
+      return new ThreadPoolTaskScheduler();
+    }
+  }
+}
@@ -0,0 +1,74 @@
+package com.transferwise.common.gracefulshutdown.strategies.servletrequestcount;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.transferwise.common.gracefulshutdown.config.RequestCountStrategyProperties.ConcurrencyLimitProperties;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class AdaptiveConcurrencyLimiterTest {
+
+  private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private long nowNanos = System.nanoTime();
+
+  @Test
+  void limit_grows_while_latency_stays_at_its_baseline() {
+    var limiter = new AdaptiveConcurrencyLimiter(new ConcurrencyLimitProperties());
+
+    for (int i = 0; i < 20; i++) {
+      runWindow(limiter, limiter.getLimit() - 1, TimeUnit.MILLISECONDS.toNanos(10));
+    }
+
+    assertThat(limiter.getLimit()).isGreaterThan(100);
+    assertThat(limiter.getBaselineLatencyNanos()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(10));
+  }
+
+  @Test
+  void limit_shrinks_when_requests_start_queueing_up() {
+    var limiter = new AdaptiveConcurrencyLimiter(new ConcurrencyLimitProperties());
+    for (int i = 0; i < 5; i++) {
+      runWindow(limiter, limiter.getLimit() - 1, TimeUnit.MILLISECONDS.toNanos(10));
+    }
+    int saturatedLimit = limiter.getLimit();
+
+    for (int i = 0; i < 20; i++) {
+      runWindow(limiter, limiter.getLimit() - 1, TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    assertThat(limiter.getLimit()).isLessThan(saturatedLimit / 2);
+    assertThat(limiter.tryAcquire(saturatedLimit)).isFalse();
+  }
+
+  @Test
+  void limit_does_not_grow_when_not_used() {
+    var limiter = new AdaptiveConcurrencyLimiter(new ConcurrencyLimitProperties());
+
+    for (int i = 0; i < 20; i++) {
+      runWindow(limiter, 5, TimeUnit.MILLISECONDS.toNanos(10));
+    }
+
+    assertThat(limiter.getLimit()).isEqualTo(100);
+  }
+
+  @Test
+  void frozen_limit_is_not_adapted() {
+    var limiter = new AdaptiveConcurrencyLimiter(new ConcurrencyLimitProperties());
+    limiter.freeze();
+
+    for (int i = 0; i < 20; i++) {
+      runWindow(limiter, limiter.getLimit() - 1, TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    assertThat(limiter.getLimit()).isEqualTo(100);
+  }
+
+  private void runWindow(AdaptiveConcurrencyLimiter limiter, long inFlight, long latencyNanos) {
+    assertThat(limiter.tryAcquire(inFlight)).isTrue();
+    for (int i = 0; i < 20; i++) {
+      limiter.onSample(nowNanos, latencyNanos);
+    }
+    nowNanos += WINDOW_NANOS;
+    limiter.onSample(nowNanos, latencyNanos);
+  }
+}
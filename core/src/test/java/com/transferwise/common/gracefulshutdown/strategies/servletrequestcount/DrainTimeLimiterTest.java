@@ -0,0 +1,50 @@
+package com.transferwise.common.gracefulshutdown.strategies.servletrequestcount;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.transferwise.common.gracefulshutdown.config.RequestCountStrategyProperties.DrainTimeLimitProperties;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.Test;
+
+class DrainTimeLimiterTest {
+
+  @Test
+  void requests_over_their_limit_are_cut_off_once() {
+    var registry = new InFlightRequestRegistry(4);
+    registry.register("/slow", null);
+    registry.register("/fast", null);
+    var limit = new DrainTimeLimitProperties();
+    limit.setUris(List.of("/slow"));
+    limit.setMaxDrainTimeMs(50);
+    var cutOffs = new AtomicInteger();
+    var limiter = new DrainTimeLimiter(List.of(limit), registry, request -> null, (entry, interruptThread) -> {
+      assertThat(entry.getUri()).isEqualTo("/slow");
+      cutOffs.incrementAndGet();
+      return true;
+    });
+
+    limiter.start();
+
+    Awaitility.await().atMost(Duration.ofSeconds(5)).until(() -> limiter.getCutOffRequestsCount() == 1);
+    // Not scheduled again for the request already cut off, nor for the one without a limit.
+    Awaitility.await().during(Duration.ofMillis(200)).atMost(Duration.ofSeconds(1)).until(() -> cutOffs.get() == 1);
+  }
+
+  @Test
+  void stopped_limiter_does_not_cut_off() {
+    var registry = new InFlightRequestRegistry(4);
+    registry.register("/slow", null);
+    var limit = new DrainTimeLimitProperties();
+    limit.setUris(List.of("/slow"));
+    limit.setMaxDrainTimeMs(100);
+    var limiter = new DrainTimeLimiter(List.of(limit), registry, request -> null, (entry, interruptThread) -> true);
+
+    limiter.start();
+    limiter.stop();
+
+    Awaitility.await().during(Duration.ofMillis(300)).atMost(Duration.ofSeconds(1)).until(() -> limiter.getCutOffRequestsCount() == 0);
+  }
+}
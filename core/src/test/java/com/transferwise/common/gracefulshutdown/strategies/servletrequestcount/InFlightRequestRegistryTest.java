@@ -0,0 +1,82 @@
+package com.transferwise.common.gracefulshutdown.strategies.servletrequestcount;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class InFlightRequestRegistryTest {
+
+  @Test
+  void registered_requests_are_in_snapshot_until_unregistered() {
+    var registry = new InFlightRequestRegistry(4);
+    var request = new Object();
+
+    int first = registry.register("/first", request);
+    int second = registry.register("/second", null);
+
+    assertThat(first).isNotEqualTo(second);
+    assertThat(registry.snapshot()).hasSize(2);
+    var firstEntry = registry.snapshot().stream().filter(entry -> entry.getUri().equals("/first")).findFirst().orElseThrow();
+    assertThat(firstEntry.getRequest()).isSameAs(request);
+    assertThat(firstEntry.getThread()).isSameAs(Thread.currentThread());
+
+    registry.unregister(first);
+    assertThat(registry.snapshot()).extracting(InFlightRequestRegistry.Entry::getUri).containsExactly("/second");
+
+    // Freed slots are reused.
+    int third = registry.register("/third", null);
+    assertThat(registry.snapshot()).extracting(InFlightRequestRegistry.Entry::getUri).containsExactlyInAnyOrder("/second", "/third");
+    registry.unregister(second);
+    registry.unregister(third);
+    assertThat(registry.snapshot()).isEmpty();
+  }
+
+  @Test
+  void requests_not_finding_a_free_slot_are_counted() {
+    var registry = new InFlightRequestRegistry(2);
+
+    registry.register("/1", null);
+    registry.register("/2", null);
+    int third = registry.register("/3", null);
+
+    assertThat(registry.getCapacity()).isEqualTo(2);
+    assertThat(third).isEqualTo(InFlightRequestRegistry.NOT_REGISTERED);
+    assertThat(registry.getNotRegisteredCount()).isEqualTo(1);
+    // No-op.
+    registry.unregister(third);
+    assertThat(registry.snapshot()).hasSize(2);
+  }
+
+  @Test
+  void interrupted_requests_are_reported_on_unregistering() {
+    var registry = new InFlightRequestRegistry(2);
+
+    int slot = registry.register("/slow", null);
+    var entry = registry.snapshot().get(0);
+
+    assertThat(registry.interrupt(slot, entry.getStartNanos())).isTrue();
+    // Interrupted once only.
+    assertThat(registry.interrupt(slot, entry.getStartNanos())).isFalse();
+    assertThat(registry.isRegistered(slot, entry.getStartNanos())).isTrue();
+    assertThat(Thread.interrupted()).isTrue();
+
+    assertThat(registry.unregister(slot)).isTrue();
+    assertThat(registry.interrupt(slot, entry.getStartNanos())).isFalse();
+    assertThat(Thread.interrupted()).isFalse();
+
+    int next = registry.register("/next", null);
+    assertThat(registry.unregister(next)).isFalse();
+  }
+
+  @Test
+  void requests_probe_a_bounded_number_of_slots() {
+    var registry = new InFlightRequestRegistry(64);
+
+    // All from the same thread, so probing from the same slot.
+    for (int i = 0; i < 16; i++) {
+      assertThat(registry.register("/" + i, null)).isNotEqualTo(InFlightRequestRegistry.NOT_REGISTERED);
+    }
+    assertThat(registry.register("/16", null)).isEqualTo(InFlightRequestRegistry.NOT_REGISTERED);
+    assertThat(registry.getNotRegisteredCount()).isEqualTo(1);
+  }
+}
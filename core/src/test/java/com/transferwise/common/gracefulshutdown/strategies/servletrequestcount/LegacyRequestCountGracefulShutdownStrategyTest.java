@@ -22,9 +22,9 @@ class LegacyRequestCountGracefulShutdownStrategyTest {
   void permission_for_shutdown_is_correctly_given_javax() {
     var strategy = new LegacyRequestCountGracefulShutdownStrategy();
 
-    strategy.currentRequestsCount.incrementAndGet();
+    strategy.inFlightRequests.started();
     assertThat(strategy.canShutdown()).isFalse();
-    strategy.currentRequestsCount.decrementAndGet();
+    strategy.inFlightRequests.finished();
     assertThat(strategy.canShutdown()).isTrue();
   }
 
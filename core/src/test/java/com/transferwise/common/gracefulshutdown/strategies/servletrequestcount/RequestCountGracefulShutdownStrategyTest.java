@@ -1,9 +1,25 @@
 package com.transferwise.common.gracefulshutdown.strategies.servletrequestcount;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
 
+import com.transferwise.common.gracefulshutdown.config.RequestCountStrategyProperties;
+import com.transferwise.common.gracefulshutdown.strategies.servletrequestcount.servletwrappers.HttpServletRequestWrapper;
+import jakarta.servlet.DispatcherType;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.SneakyThrows;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.condition.EnabledIf;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
 
 
 @EnabledIf("hasJakartaServletApi")
@@ -22,9 +38,395 @@ class RequestCountGracefulShutdownStrategyTest {
   void permission_for_shutdown_is_correctly_given_javax() {
     var strategy = new RequestCountGracefulShutdownStrategy();
 
-    strategy.currentRequestsCount.incrementAndGet();
+    strategy.inFlightRequests.started();
     assertThat(strategy.canShutdown()).isFalse();
-    strategy.currentRequestsCount.decrementAndGet();
+    strategy.inFlightRequests.finished();
     assertThat(strategy.canShutdown()).isTrue();
   }
+
+  @Test
+  void drain_completion_is_signalled_after_client_reaction_time_has_passed() {
+    var strategy = new RequestCountGracefulShutdownStrategy();
+
+    assertThat(strategy.getDrainCompletion().toCompletableFuture()).isNotDone();
+    strategy.clientReactionTimePassed();
+    assertThat(strategy.getDrainCompletion().toCompletableFuture()).isDone();
+  }
+
+  @Test
+  @SneakyThrows
+  void requests_arriving_while_draining_are_counted() {
+    var strategy = new RequestCountGracefulShutdownStrategy();
+    ReflectionTestUtils.setField(strategy, "requestCountStrategyProperties", new RequestCountStrategyProperties());
+    strategy.prepareForShutdown();
+    assertThat(strategy.canShutdown()).isTrue();
+
+    strategy.doFilterInternal(new TestRequest("/test"), sc -> {
+    }, () -> {
+      assertThat(strategy.getCurrentRequestsCount()).isEqualTo(1);
+      assertThat(strategy.canShutdown()).isFalse();
+      return null;
+    });
+
+    assertThat(strategy.getLateRequestsCount()).isEqualTo(1);
+    assertThat(strategy.canShutdown()).isTrue();
+  }
+
+  @Test
+  @SneakyThrows
+  void forwarded_request_is_counted_once_without_request_attributes() {
+    var strategy = new RequestCountGracefulShutdownStrategy();
+    ReflectionTestUtils.setField(strategy, "requestCountStrategyProperties", new RequestCountStrategyProperties());
+    var request = new MockHttpServletRequest("GET", "/test");
+    var response = new MockHttpServletResponse();
+    var innerChainCalls = new AtomicInteger();
+
+    strategy.doFilter(request, response, (forwardedRequest, forwardedResponse) ->
+        strategy.doFilter(forwardedRequest, forwardedResponse, (innerRequest, innerResponse) -> {
+          innerChainCalls.incrementAndGet();
+          assertThat(strategy.getCurrentRequestsCount()).isEqualTo(1);
+        }));
+
+    assertThat(innerChainCalls.get()).isEqualTo(1);
+    assertThat(strategy.getCurrentRequestsCount()).isZero();
+    assertThat(request.getAttributeNames().hasMoreElements()).isFalse();
+  }
+
+  @Test
+  @SneakyThrows
+  void requests_are_rejected_after_client_reaction_time_has_passed() {
+    var strategy = new RequestCountGracefulShutdownStrategy();
+    ReflectionTestUtils.setField(strategy, "requestCountStrategyProperties", new RequestCountStrategyProperties());
+    strategy.prepareForShutdown();
+    strategy.clientReactionTimePassed();
+    var response = new MockHttpServletResponse();
+
+    strategy.doFilter(new MockHttpServletRequest("GET", "/test"), response, (request, chainResponse) -> {
+      throw new IllegalStateException("Rejected request must not reach the chain.");
+    });
+
+    assertThat(response.getStatus()).isEqualTo(503);
+    assertThat(strategy.getCurrentRequestsCount()).isZero();
+    assertThat(strategy.getRejectedRequestsCount()).isEqualTo(1);
+  }
+
+  @Test
+  @SneakyThrows
+  void ignored_requests_are_not_counted() {
+    var strategy = new RequestCountGracefulShutdownStrategy();
+    var properties = new RequestCountStrategyProperties();
+    // Matched in any case.
+    properties.getIgnoredMethods().add("options");
+    ReflectionTestUtils.setField(strategy, "requestCountStrategyProperties", properties);
+    strategy.afterPropertiesSet();
+    var counted = new AtomicInteger();
+
+    for (var request : List.of(new MockHttpServletRequest("GET", "/actuator/health/liveness"), new MockHttpServletRequest("OPTIONS", "/test"),
+        new MockHttpServletRequest("GET", "/test"))) {
+      strategy.doFilter(request, new MockHttpServletResponse(), (chainRequest, chainResponse) -> {
+        if (strategy.getCurrentRequestsCount() > 0) {
+          counted.incrementAndGet();
+        }
+      });
+    }
+
+    assertThat(counted.get()).isEqualTo(1);
+  }
+
+  @Test
+  @SneakyThrows
+  void in_flight_requests_are_reported_per_endpoint() {
+    var strategy = new RequestCountGracefulShutdownStrategy();
+    var properties = new RequestCountStrategyProperties();
+    properties.getInFlightRegistry().setEnabled(true);
+    properties.getInFlightRegistry().setTopN(1);
+    ReflectionTestUtils.setField(strategy, "requestCountStrategyProperties", properties);
+    strategy.afterPropertiesSet();
+    var reports = new ArrayList<InFlightRequestsReport>();
+
+    strategy.doFilter(new MockHttpServletRequest("GET", "/users/1"), new MockHttpServletResponse(), (outerRequest, outerResponse) -> {
+      outerRequest.setAttribute("org.springframework.web.servlet.HandlerMapping.bestMatchingPattern", "/users/{id}");
+      // Another thread, as the filter lets re-entered requests through.
+      CompletableFuture.runAsync(() -> {
+        try {
+          strategy.doFilter(new MockHttpServletRequest("GET", "/users/2"), new MockHttpServletResponse(), (innerRequest, innerResponse) -> {
+            innerRequest.setAttribute("org.springframework.web.servlet.HandlerMapping.bestMatchingPattern", "/users/{id}");
+            reports.add(strategy.getInFlightRequestsReport());
+          });
+        } catch (Exception e) {
+          throw new IllegalStateException(e);
+        }
+      }).join();
+    });
+
+    assertThat(reports).hasSize(1);
+    var report = reports.get(0);
+    assertThat(report.getInFlightRequests()).isEqualTo(2);
+    assertThat(report.getCountsPerEndpoint()).containsExactly(Map.entry("/users/{id}", 2L));
+    assertThat(report.getLongestRunning()).extracting(InFlightRequestsReport.InFlightRequest::getUri).containsExactly("/users/1");
+    assertThat(strategy.getInFlightRequestsReport().getLongestRunning()).isEmpty();
+  }
+
+  @Test
+  @SneakyThrows
+  void async_requests_are_counted_until_completed() {
+    var strategy = new RequestCountGracefulShutdownStrategy();
+    ReflectionTestUtils.setField(strategy, "requestCountStrategyProperties", new RequestCountStrategyProperties());
+    var request = new MockHttpServletRequest("GET", "/test");
+    request.setAsyncSupported(true);
+    var response = new MockHttpServletResponse();
+
+    strategy.doFilter(request, response, (chainRequest, chainResponse) -> chainRequest.startAsync());
+    assertThat(strategy.getCurrentRequestsCount()).isEqualTo(1);
+
+    // Re-dispatch of an accepted request is neither counted again nor rejected.
+    strategy.prepareForShutdown();
+    strategy.clientReactionTimePassed();
+    request.setDispatcherType(DispatcherType.ASYNC);
+    var dispatches = new AtomicInteger();
+    strategy.doFilter(request, response, (chainRequest, chainResponse) -> dispatches.incrementAndGet());
+    assertThat(dispatches.get()).isEqualTo(1);
+    assertThat(strategy.getCurrentRequestsCount()).isEqualTo(1);
+    assertThat(strategy.canShutdown()).isFalse();
+
+    request.getAsyncContext().complete();
+    assertThat(strategy.getCurrentRequestsCount()).isZero();
+    assertThat(strategy.canShutdown()).isTrue();
+    assertThat(strategy.getDrainCompletion().toCompletableFuture()).isDone();
+  }
+
+  @Test
+  void unknown_ignored_dispatcher_types_fail_the_startup() {
+    var strategy = new RequestCountGracefulShutdownStrategy();
+    var properties = new RequestCountStrategyProperties();
+    properties.getIgnoredDispatcherTypes().add("forwrd");
+    ReflectionTestUtils.setField(strategy, "requestCountStrategyProperties", properties);
+
+    assertThatThrownBy(strategy::afterPropertiesSet).isInstanceOf(IllegalArgumentException.class).hasMessageContaining("FORWRD");
+  }
+
+  @Test
+  @SneakyThrows
+  void error_dispatch_of_a_rejected_request_is_not_counted_as_late() {
+    var strategy = new RequestCountGracefulShutdownStrategy();
+    ReflectionTestUtils.setField(strategy, "requestCountStrategyProperties", new RequestCountStrategyProperties());
+    strategy.prepareForShutdown();
+    strategy.clientReactionTimePassed();
+    assertThat(strategy.canShutdown()).isTrue();
+
+    var request = new MockHttpServletRequest("GET", "/test");
+    var response = new MockHttpServletResponse();
+    strategy.doFilter(request, response, (chainRequest, chainResponse) -> {
+      throw new IllegalStateException("Rejected request must not reach the chain.");
+    });
+    assertThat(response.getStatus()).isEqualTo(503);
+
+    // The container renders the error page of `sendError(503)`.
+    request.setDispatcherType(DispatcherType.ERROR);
+    var dispatches = new AtomicInteger();
+    strategy.doFilter(request, response, (chainRequest, chainResponse) -> {
+      assertThat(strategy.getCurrentRequestsCount()).isZero();
+      dispatches.incrementAndGet();
+    });
+
+    assertThat(dispatches.get()).isEqualTo(1);
+    assertThat(strategy.getLateRequestsCount()).isZero();
+    assertThat(strategy.getRejectedRequestsCount()).isEqualTo(1);
+  }
+
+  @Test
+  @SneakyThrows
+  void persistent_connections_are_drained_once_shutdown_is_prepared() {
+    var strategy = new RequestCountGracefulShutdownStrategy();
+    ReflectionTestUtils.setField(strategy, "requestCountStrategyProperties", new RequestCountStrategyProperties());
+    strategy.afterPropertiesSet();
+    var response = new MockHttpServletResponse();
+    strategy.doFilter(new MockHttpServletRequest("GET", "/test"), response, (request, chainResponse) -> {
+    });
+    assertThat(response.getHeader("Connection")).isNull();
+
+    strategy.prepareForShutdown();
+    response = new MockHttpServletResponse();
+    strategy.doFilter(new MockHttpServletRequest("GET", "/test"), response, (request, chainResponse) -> {
+    });
+    assertThat(response.getHeader("Connection")).isEqualTo("close");
+
+    var http2Request = new MockHttpServletRequest("GET", "/test");
+    http2Request.setProtocol("HTTP/2.0");
+    response = new MockHttpServletResponse();
+    strategy.doFilter(http2Request, response, (request, chainResponse) -> {
+    });
+    assertThat(response.getHeader("Connection")).isNull();
+
+    strategy.clientReactionTimePassed();
+    response = new MockHttpServletResponse();
+    strategy.doFilter(new MockHttpServletRequest("GET", "/test"), response, (request, chainResponse) -> {
+    });
+    assertThat(response.getStatus()).isEqualTo(503);
+    assertThat(response.getHeader("Retry-After")).isEqualTo("1");
+    assertThat(response.getHeader("Connection")).isEqualTo("close");
+  }
+
+  @Test
+  @SneakyThrows
+  void drain_time_is_estimated_once_requests_are_not_accepted_anymore() {
+    var strategy = new RequestCountGracefulShutdownStrategy();
+    ReflectionTestUtils.setField(strategy, "requestCountStrategyProperties", new RequestCountStrategyProperties());
+    assertThat(strategy.getEstimatedDrainTimeMs()).isEqualTo(-1);
+
+    strategy.prepareForShutdown();
+    var request = new MockHttpServletRequest("GET", "/test");
+    request.setAsyncSupported(true);
+    strategy.doFilter(request, new MockHttpServletResponse(), (chainRequest, chainResponse) -> chainRequest.startAsync());
+    Thread.sleep(10);
+    strategy.clientReactionTimePassed();
+
+    // The mean duration from the clients reaction window is the only thing known so far.
+    assertThat(strategy.getEstimatedDrainTimeMs()).isNotNegative();
+    assertThat(strategy.canShutdown()).isFalse();
+
+    request.getAsyncContext().complete();
+    assertThat(strategy.canShutdown()).isTrue();
+    assertThat(strategy.getEstimatedDrainTimeMs()).isZero();
+  }
+
+  @Test
+  @SneakyThrows
+  void async_requests_over_their_drain_time_limit_are_cut_off() {
+    var strategy = new RequestCountGracefulShutdownStrategy();
+    var properties = new RequestCountStrategyProperties();
+    var limit = new RequestCountStrategyProperties.DrainTimeLimitProperties();
+    limit.setUris(List.of("/export/**"));
+    limit.setMaxDrainTimeMs(0);
+    properties.setDrainTimeLimits(List.of(limit));
+    ReflectionTestUtils.setField(strategy, "requestCountStrategyProperties", properties);
+    strategy.afterPropertiesSet();
+
+    var exportRequest = new MockHttpServletRequest("GET", "/export/users");
+    exportRequest.setAsyncSupported(true);
+    var exportResponse = new MockHttpServletResponse();
+    strategy.doFilter(exportRequest, exportResponse, (chainRequest, chainResponse) -> chainRequest.startAsync());
+    var pollRequest = new MockHttpServletRequest("GET", "/poll");
+    pollRequest.setAsyncSupported(true);
+    strategy.doFilter(pollRequest, new MockHttpServletResponse(), (chainRequest, chainResponse) -> chainRequest.startAsync());
+
+    strategy.prepareForShutdown();
+    strategy.clientReactionTimePassed();
+
+    await().atMost(Duration.ofSeconds(5)).until(() -> strategy.getCurrentRequestsCount() == 1);
+    assertThat(exportResponse.getStatus()).isEqualTo(503);
+    assertThat(strategy.getCutOffRequestsCount()).isEqualTo(1);
+    // Not limited, so it keeps the drain waiting.
+    assertThat(pollRequest.isAsyncStarted()).isTrue();
+    assertThat(strategy.canShutdown()).isFalse();
+  }
+
+  @Test
+  @SneakyThrows
+  void requests_over_the_concurrency_cap_are_shed_while_warming_up() {
+    var strategy = new RequestCountGracefulShutdownStrategy();
+    var properties = new RequestCountStrategyProperties();
+    properties.getWarmUp().setEnabled(true);
+    properties.getWarmUp().setInitialConcurrency(1);
+    properties.getWarmUp().setInitialAcceptedShare(1);
+    ReflectionTestUtils.setField(strategy, "requestCountStrategyProperties", properties);
+    strategy.afterPropertiesSet();
+    strategy.applicationStarted();
+
+    var slowRequest = new MockHttpServletRequest("GET", "/test");
+    slowRequest.setAsyncSupported(true);
+    strategy.doFilter(slowRequest, new MockHttpServletResponse(), (chainRequest, chainResponse) -> chainRequest.startAsync());
+    // The cap is checked against the in-flight count sampled every millisecond.
+    Thread.sleep(2);
+
+    var response = new MockHttpServletResponse();
+    strategy.doFilter(new MockHttpServletRequest("GET", "/test"), response, (chainRequest, chainResponse) -> {
+      throw new IllegalStateException("Shed request must not reach the chain.");
+    });
+    assertThat(response.getStatus()).isEqualTo(503);
+    assertThat(response.getHeader("Retry-After")).isEqualTo("1");
+    assertThat(strategy.getShedRequestsCount()).isEqualTo(1);
+    assertThat(strategy.getRejectedRequestsCount()).isZero();
+
+    // Health checks are never shed.
+    response = new MockHttpServletResponse();
+    strategy.doFilter(new MockHttpServletRequest("GET", "/actuator/health"), response, (chainRequest, chainResponse) -> {
+    });
+    assertThat(response.getStatus()).isEqualTo(200);
+
+    slowRequest.getAsyncContext().complete();
+    Thread.sleep(2);
+    response = new MockHttpServletResponse();
+    strategy.doFilter(new MockHttpServletRequest("GET", "/test"), response, (chainRequest, chainResponse) -> {
+    });
+    assertThat(response.getStatus()).isEqualTo(200);
+  }
+
+  @Test
+  @SneakyThrows
+  void requests_over_the_concurrency_limit_are_rejected() {
+    var strategy = new RequestCountGracefulShutdownStrategy();
+    var properties = new RequestCountStrategyProperties();
+    properties.getConcurrencyLimit().setEnabled(true);
+    properties.getConcurrencyLimit().setInitialLimit(1);
+    properties.getConcurrencyLimit().setMinLimit(1);
+    ReflectionTestUtils.setField(strategy, "requestCountStrategyProperties", properties);
+    strategy.afterPropertiesSet();
+
+    var slowRequest = new MockHttpServletRequest("GET", "/test");
+    slowRequest.setAsyncSupported(true);
+    strategy.doFilter(slowRequest, new MockHttpServletResponse(), (chainRequest, chainResponse) -> chainRequest.startAsync());
+    // The limiter sees the in-flight count sampled every millisecond.
+    Thread.sleep(2);
+
+    var response = new MockHttpServletResponse();
+    strategy.doFilter(new MockHttpServletRequest("GET", "/test"), response, (chainRequest, chainResponse) -> {
+      throw new IllegalStateException("Limited request must not reach the chain.");
+    });
+    assertThat(response.getStatus()).isEqualTo(503);
+    assertThat(strategy.getLimitedRequestsCount()).isEqualTo(1);
+
+    // The shutdown takes over rejecting.
+    strategy.prepareForShutdown();
+    strategy.clientReactionTimePassed();
+    strategy.doFilter(new MockHttpServletRequest("GET", "/test"), new MockHttpServletResponse(), (chainRequest, chainResponse) -> {
+    });
+    assertThat(strategy.getLimitedRequestsCount()).isEqualTo(1);
+    assertThat(strategy.getRejectedRequestsCount()).isEqualTo(1);
+  }
+
+  private static class TestRequest implements HttpServletRequestWrapper {
+
+    private final String requestUri;
+    private final Map<String, Object> attributes = new HashMap<>();
+
+    TestRequest(String requestUri) {
+      this.requestUri = requestUri;
+    }
+
+    @Override
+    public void setAttribute(String key, Object value) {
+      attributes.put(key, value);
+    }
+
+    @Override
+    public String getRequestUri() {
+      return requestUri;
+    }
+
+    @Override
+    public String getRemoteAddr() {
+      return "127.0.0.1";
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+      return attributes.get(name);
+    }
+
+    @Override
+    public void removeAttribute(String name) {
+      attributes.remove(name);
+    }
+  }
 }
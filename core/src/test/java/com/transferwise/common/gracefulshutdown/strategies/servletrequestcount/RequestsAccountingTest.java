@@ -0,0 +1,37 @@
+package com.transferwise.common.gracefulshutdown.strategies.servletrequestcount;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class RequestsAccountingTest {
+
+  @Test
+  void requests_are_counted_per_uri_and_remote_address() {
+    var accounting = new RequestsAccounting(10);
+
+    accounting.record("/a", "10.0.0.1");
+    accounting.record("/b", "10.0.0.1");
+    accounting.record("/a", "10.0.0.2");
+    accounting.record("/a", null);
+
+    assertThat(accounting.getTopUris(1)).containsExactly(Map.entry("/a", 3L));
+    assertThat(accounting.getTopRemoteAddrs(1)).containsExactly(Map.entry("10.0.0.1", 2L));
+    assertThat(accounting.getTopRemoteAddrs(5)).containsOnly(Map.entry("10.0.0.1", 2L), Map.entry("10.0.0.2", 1L),
+        Map.entry(RequestsAccounting.OTHER, 1L));
+  }
+
+  @Test
+  void keys_beyond_the_cap_are_counted_as_other() {
+    var accounting = new RequestsAccounting(2);
+
+    accounting.record("/a", "10.0.0.1");
+    accounting.record("/b", "10.0.0.1");
+    accounting.record("/c", "10.0.0.1");
+    accounting.record("/d", "10.0.0.1");
+    accounting.record("/a", "10.0.0.1");
+
+    assertThat(accounting.getTopUris(10)).containsOnly(Map.entry("/a", 2L), Map.entry("/b", 1L), Map.entry(RequestsAccounting.OTHER, 2L));
+  }
+}
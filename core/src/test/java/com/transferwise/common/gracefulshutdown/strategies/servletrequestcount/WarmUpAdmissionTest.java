@@ -0,0 +1,46 @@
+package com.transferwise.common.gracefulshutdown.strategies.servletrequestcount;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.transferwise.common.gracefulshutdown.config.RequestCountStrategyProperties.WarmUpProperties;
+import org.junit.jupiter.api.Test;
+
+class WarmUpAdmissionTest {
+
+  @Test
+  void requests_over_the_concurrency_cap_are_shed_until_finished() {
+    var properties = new WarmUpProperties();
+    properties.setInitialConcurrency(1);
+    properties.setInitialAcceptedShare(1);
+    var admission = new WarmUpAdmission(properties);
+
+    // Not started yet.
+    assertThat(admission.tryAdmit(100)).isTrue();
+
+    admission.start();
+    assertThat(admission.isWarmingUp()).isTrue();
+    assertThat(admission.tryAdmit(0)).isTrue();
+    assertThat(admission.tryAdmit(1)).isFalse();
+    assertThat(admission.getShedRequestsCount()).isEqualTo(1);
+
+    admission.finish();
+    assertThat(admission.isWarmingUp()).isFalse();
+    assertThat(admission.tryAdmit(100)).isTrue();
+    assertThat(admission.getShedRequestsCount()).isEqualTo(1);
+  }
+
+  @Test
+  void ramp_finishes_after_its_duration() throws InterruptedException {
+    var properties = new WarmUpProperties();
+    properties.setDurationMs(10);
+    properties.setInitialConcurrency(1);
+    var admission = new WarmUpAdmission(properties);
+    admission.start();
+    admission.tryAdmit(0);
+
+    Thread.sleep(20);
+
+    assertThat(admission.tryAdmit(1_000)).isTrue();
+    assertThat(admission.isWarmingUp()).isFalse();
+  }
+}
@@ -0,0 +1,103 @@
+package com.transferwise.common.gracefulshutdown.strategies.webfluxrequestcount;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.transferwise.common.gracefulshutdown.config.RequestCountStrategyProperties;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+class WebFluxRequestCountGracefulShutdownStrategyTest {
+
+  private WebFluxRequestCountGracefulShutdownStrategy strategy;
+
+  @BeforeEach
+  void setup() {
+    strategy = new WebFluxRequestCountGracefulShutdownStrategy();
+    ReflectionTestUtils.setField(strategy, "requestCountStrategyProperties", new RequestCountStrategyProperties());
+    strategy.afterPropertiesSet();
+  }
+
+  @Test
+  void exchange_is_counted_until_the_response_publisher_terminates() {
+    Sinks.Empty<Void> response = Sinks.empty();
+    var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/stream"));
+
+    var filtered = strategy.filter(exchange, chainExchange -> response.asMono());
+    // Nothing is counted before the subscription.
+    assertThat(strategy.getCurrentRequestsCount()).isZero();
+
+    var subscription = filtered.subscribe();
+    assertThat(strategy.getCurrentRequestsCount()).isEqualTo(1);
+    assertThat(strategy.canShutdown()).isFalse();
+
+    response.tryEmitEmpty();
+    assertThat(subscription.isDisposed()).isTrue();
+    assertThat(strategy.getCurrentRequestsCount()).isZero();
+    assertThat(strategy.canShutdown()).isTrue();
+  }
+
+  @Test
+  void cancelled_exchange_is_not_counted_anymore() {
+    var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/stream"));
+
+    var subscription = strategy.filter(exchange, chainExchange -> Mono.never()).subscribe();
+    assertThat(strategy.getCurrentRequestsCount()).isEqualTo(1);
+
+    subscription.dispose();
+    assertThat(strategy.getCurrentRequestsCount()).isZero();
+  }
+
+  @Test
+  void filter_is_ordered_but_the_strategy_is_not() {
+    var filter = new WebFluxRequestCountFilter(strategy, Ordered.HIGHEST_PRECEDENCE);
+    var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/test"));
+
+    filter.filter(exchange, chainExchange -> {
+      assertThat(strategy.getCurrentRequestsCount()).isEqualTo(1);
+      return Mono.empty();
+    }).block();
+
+    assertThat(filter.getOrder()).isEqualTo(Ordered.HIGHEST_PRECEDENCE);
+    // Otherwise the filter order would become the shutdown order.
+    assertThat(strategy).isNotInstanceOf(Ordered.class);
+    assertThat(strategy.getCurrentRequestsCount()).isZero();
+  }
+
+  @Test
+  void ignored_exchanges_are_not_counted() {
+    var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/actuator/health/readiness"));
+    var chainCalls = new AtomicInteger();
+
+    strategy.filter(exchange, chainExchange -> {
+      chainCalls.incrementAndGet();
+      assertThat(strategy.getCurrentRequestsCount()).isZero();
+      return Mono.empty();
+    }).block();
+
+    assertThat(chainCalls.get()).isEqualTo(1);
+  }
+
+  @Test
+  void exchanges_are_rejected_after_client_reaction_time_has_passed() {
+    strategy.prepareForShutdown();
+    strategy.clientReactionTimePassed();
+    var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/test"));
+
+    strategy.filter(exchange, chainExchange -> {
+      throw new IllegalStateException("Rejected exchange must not reach the chain.");
+    }).block();
+
+    assertThat(exchange.getResponse().getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+    assertThat(exchange.getResponse().getHeaders().getFirst("Retry-After")).isEqualTo("1");
+    assertThat(exchange.getResponse().getHeaders().getFirst("Connection")).isEqualTo("close");
+    assertThat(strategy.getCurrentRequestsCount()).isZero();
+  }
+}
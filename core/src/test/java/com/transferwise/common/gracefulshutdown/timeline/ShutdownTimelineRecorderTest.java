@@ -0,0 +1,40 @@
+package com.transferwise.common.gracefulshutdown.timeline;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.transferwise.common.gracefulshutdown.GracefulShutdownStrategy;
+import com.transferwise.common.gracefulshutdown.timeline.ShutdownTimelineEvent.Outcome;
+import com.transferwise.common.gracefulshutdown.timeline.ShutdownTimelineEvent.Type;
+import java.nio.file.Path;
+import java.util.List;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ShutdownTimelineRecorderTest {
+
+  @TempDir
+  Path tempDir;
+
+  @Test
+  @SneakyThrows
+  void timeline_survives_write_and_read() {
+    GracefulShutdownStrategy strategy = () -> true;
+    var timeline = new ShutdownTimeline(List.of());
+    long startNs = System.nanoTime();
+    timeline.recordHook("prepareForShutdown", strategy, startNs, startNs + 2_000_000, Outcome.SUCCESS);
+    timeline.recordGreenLight(strategy, startNs + 5_000_000, 3, Outcome.TIMEOUT);
+    timeline.recordPhase(ShutdownPhases.TOTAL, startNs, startNs + 7_000_000);
+    timeline.finish();
+
+    var file = tempDir.resolve("timeline.tsv");
+    ShutdownTimelineRecorder.write(timeline, file);
+    var readTimeline = ShutdownTimelineRecorder.read(file);
+
+    assertThat(readTimeline.getStartTimeEpochMs()).isEqualTo(timeline.getStartTimeEpochMs());
+    assertThat(readTimeline.getEvents()).isEqualTo(timeline.getEvents());
+    assertThat(readTimeline.getDurationMs()).isEqualTo(7);
+    assertThat(readTimeline.getEvents()).filteredOn(event -> event.getType() == Type.GREEN_LIGHT)
+        .singleElement().satisfies(event -> assertThat(event.getRedLightIterations()).isEqualTo(3));
+  }
+}
@@ -0,0 +1,75 @@
+package com.transferwise.common.gracefulshutdown.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class DrainTimeEstimatorTest {
+
+  private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  @Test
+  void nothing_is_known_without_samples_and_prior() {
+    var estimator = new DrainTimeEstimator();
+    assertThat(estimator.estimateRemainingNanos()).isEqualTo(DrainTimeEstimator.UNKNOWN);
+
+    estimator.addSample(SECOND, 100);
+    assertThat(estimator.estimateRemainingNanos()).isEqualTo(DrainTimeEstimator.UNKNOWN);
+  }
+
+  @Test
+  void drained_is_estimated_as_done() {
+    var estimator = new DrainTimeEstimator();
+    estimator.addSample(SECOND, 100);
+    estimator.addSample(2 * SECOND, 0);
+
+    assertThat(estimator.estimateRemainingNanos()).isZero();
+  }
+
+  @Test
+  void decay_is_fitted_from_samples() {
+    var estimator = new DrainTimeEstimator();
+    // Halves every second, so from 64 it takes 7 more seconds to get below half a request.
+    estimator.addSample(SECOND, 256);
+    estimator.addSample(2 * SECOND, 128);
+    estimator.addSample(3 * SECOND, 64);
+
+    assertThat((double) estimator.estimateRemainingNanos()).isCloseTo(7.0 * SECOND, within(0.01 * SECOND));
+  }
+
+  @Test
+  void prior_is_used_until_samples_are_available() {
+    var estimator = new DrainTimeEstimator();
+    estimator.setMeanDurationNanos(SECOND);
+    estimator.addSample(SECOND, 50);
+
+    // ln(2 * 50) seconds, for a rate of 1 per second.
+    assertThat((double) estimator.estimateRemainingNanos()).isCloseTo(Math.log(100) * SECOND, within(0.01 * SECOND));
+  }
+
+  @Test
+  void requests_not_decaying_are_not_draining() {
+    var estimator = new DrainTimeEstimator();
+    estimator.addSample(SECOND, 10);
+    estimator.addSample(2 * SECOND, 10);
+    estimator.addSample(3 * SECOND, 11);
+
+    assertThat(estimator.estimateRemainingNanos()).isEqualTo(DrainTimeEstimator.NOT_DRAINING);
+  }
+
+  @Test
+  void stuck_requests_outweigh_a_fast_prior_over_time() {
+    var estimator = new DrainTimeEstimator();
+    estimator.setMeanDurationNanos(TimeUnit.MILLISECONDS.toNanos(10));
+    estimator.addSample(SECOND, 10);
+    long withPriorOnly = estimator.estimateRemainingNanos();
+
+    for (int i = 2; i <= 20; i++) {
+      estimator.addSample(i * SECOND, 10);
+    }
+
+    assertThat(estimator.estimateRemainingNanos()).isGreaterThan(5 * withPriorOnly);
+  }
+}
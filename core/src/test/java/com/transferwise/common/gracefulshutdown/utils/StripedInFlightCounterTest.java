@@ -0,0 +1,73 @@
+package com.transferwise.common.gracefulshutdown.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Test;
+
+class StripedInFlightCounterTest {
+
+  @Test
+  @SneakyThrows
+  void operations_finishing_on_other_threads_are_counted_correctly() {
+    var counter = new StripedInFlightCounter(8);
+    var executor = Executors.newFixedThreadPool(8);
+    try {
+      var start = new CountDownLatch(1);
+      var futures = new ArrayList<Future<?>>();
+      for (int t = 0; t < 8; t++) {
+        futures.add(executor.submit(() -> {
+          start.await();
+          for (int i = 0; i < 10_000; i++) {
+            counter.started();
+            // Finished on another thread, like async requests do.
+            executor.submit(counter::finished);
+          }
+          return null;
+        }));
+      }
+      start.countDown();
+      for (var future : futures) {
+        future.get();
+      }
+      executor.shutdown();
+      assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertThat(counter.getInFlight()).isZero();
+    assertThat(counter.getStarted()).isEqualTo(80_000);
+  }
+
+  @Test
+  void in_flight_operations_are_visible() {
+    var counter = new StripedInFlightCounter();
+
+    counter.started();
+    counter.started();
+    assertThat(counter.getInFlight()).isEqualTo(2);
+
+    counter.finished();
+    assertThat(counter.getInFlight()).isEqualTo(1);
+
+    counter.finished();
+    assertThat(counter.getInFlight()).isZero();
+  }
+
+  @Test
+  void sampled_in_flight_is_refreshed_once_per_interval() {
+    var counter = new StripedInFlightCounter();
+    long now = System.nanoTime();
+    assertThat(counter.getInFlightSampled(now)).isZero();
+
+    counter.started();
+    assertThat(counter.getInFlightSampled(now + TimeUnit.MICROSECONDS.toNanos(500))).isZero();
+    assertThat(counter.getInFlightSampled(now + TimeUnit.MILLISECONDS.toNanos(1))).isEqualTo(1);
+  }
+}
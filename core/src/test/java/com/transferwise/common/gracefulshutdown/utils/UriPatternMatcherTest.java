@@ -0,0 +1,75 @@
+package com.transferwise.common.gracefulshutdown.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class UriPatternMatcherTest {
+
+  @Test
+  void exact_uris_are_matched() {
+    var matcher = UriPatternMatcher.compile("/health", "/actuator/health");
+
+    assertThat(matcher.match("/health")).isEqualTo(0);
+    assertThat(matcher.match("/actuator/health")).isEqualTo(1);
+    assertThat(matcher.matches("/healthz")).isFalse();
+    assertThat(matcher.matches("/health/")).isFalse();
+    assertThat(matcher.matches("/actuator")).isFalse();
+    assertThat(matcher.matches("")).isFalse();
+    assertThat(matcher.matches(null)).isFalse();
+  }
+
+  @Test
+  void double_star_segment_matches_any_number_of_segments() {
+    var matcher = UriPatternMatcher.compile("/actuator/health/**", "/api/**/status");
+
+    assertThat(matcher.matches("/actuator/health")).isTrue();
+    assertThat(matcher.matches("/actuator/health/")).isTrue();
+    assertThat(matcher.matches("/actuator/health/liveness")).isTrue();
+    assertThat(matcher.matches("/actuator/health/db/primary")).isTrue();
+    assertThat(matcher.matches("/actuator/healthz")).isFalse();
+
+    assertThat(matcher.matches("/api/status")).isTrue();
+    assertThat(matcher.matches("/api/v1/status")).isTrue();
+    assertThat(matcher.matches("/api/v1/users/status")).isTrue();
+    assertThat(matcher.matches("/api/v1status")).isFalse();
+    assertThat(matcher.matches("/api/v1/status/x")).isFalse();
+  }
+
+  @Test
+  void single_star_and_question_mark_stay_within_a_segment() {
+    var matcher = UriPatternMatcher.compile("/static/*.css", "/v?/ping");
+
+    assertThat(matcher.matches("/static/main.css")).isTrue();
+    assertThat(matcher.matches("/static/.css")).isTrue();
+    assertThat(matcher.matches("/static/css/main.css")).isFalse();
+    assertThat(matcher.matches("/static/main.js")).isFalse();
+
+    assertThat(matcher.matches("/v1/ping")).isTrue();
+    assertThat(matcher.matches("/v12/ping")).isFalse();
+    assertThat(matcher.matches("/v/ping")).isFalse();
+  }
+
+  @Test
+  void first_matching_pattern_is_returned() {
+    var matcher = UriPatternMatcher.compile("/api/users", "/api/*", "/**");
+
+    assertThat(matcher.match("/api/users")).isEqualTo(0);
+    assertThat(matcher.match("/api/orders")).isEqualTo(1);
+    assertThat(matcher.match("/other/\u00fcn\u00efcode")).isEqualTo(2);
+  }
+
+  @Test
+  void empty_matcher_matches_nothing() {
+    assertThat(UriPatternMatcher.compile(List.of()).matches("/")).isFalse();
+    assertThat(UriPatternMatcher.compile((Iterable<String>) null).matches("/")).isFalse();
+  }
+
+  @Test
+  void non_ascii_patterns_are_rejected() {
+    assertThatThrownBy(() -> UriPatternMatcher.compile("/\u00fcn\u00efcode"))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
@@ -1,5 +1,9 @@
 package com.transferwise.common.gracefulshutdown;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.CompletionStage;
+
 @SuppressWarnings("unused")
 public interface GracefulShutdownStrategy {
 
@@ -9,6 +13,15 @@ public interface GracefulShutdownStrategy {
   default void applicationStarted() {
   }
 
+  /**
+   * Return false, when {@link #applicationStarted()} has to run alone, after the hooks of strategies before it have finished.
+   *
+   * <p>Only relevant, when concurrent startup hooks are enabled.
+   */
+  default boolean isApplicationStartedConcurrent() {
+    return true;
+  }
+
   /**
    * Return true, when application is ready to serve traffic.
    */
@@ -22,19 +35,69 @@ public interface GracefulShutdownStrategy {
   default void prepareForShutdown() {
   }
 
+  /**
+   * Called when a signal for requesting a shutdown has received, with the deadline of the whole shutdown.
+   *
+   * <p>Strategies sizing their own timeouts should derive those from the deadline, at the moment they need those. By default, delegates to
+   * {@link #prepareForShutdown()}.
+   */
+  default void prepareForShutdown(ShutdownDeadline deadline) {
+    prepareForShutdown();
+  }
+
   /**
    * Application is not stopped, before this returns true.
    */
   boolean canShutdown();
 
   /**
-   * Called, when decision has made to finally stop the application.
+   * Optional push-based counterpart of {@link #canShutdown()}.
+   *
+   * <p>Strategies knowing the exact moment they have drained, can return a future completing at that moment. This allows the shutdown to
+   * continue right away, instead of waiting for the next {@link #canShutdown()} check.
+   *
+   * <p>{@link #canShutdown()} stays the source of truth, the future is only used as a wake-up signal. Returning null means, that only
+   * polling is supported.
+   */
+  default CompletionStage<?> getDrainCompletion() {
+    return null;
+  }
+
+  /**
+   * Optional estimate of how long it takes, until {@link #canShutdown()} gives a green light.
+   *
+   * <p>Used for logging, and by the opt-in early escalation, which stops waiting for drains, which will obviously not finish before the
+   * deadline. Should be cheap, it is called on every check.
+   *
+   * @return milliseconds, -1 when not known, {@link Long#MAX_VALUE} when the strategy is not draining at all
+   */
+  default long getEstimatedDrainTimeMs() {
+    return -1;
+  }
+
+  /**
+   * Types of strategies, which have to drain before this strategy is asked to prepare for shutdown.
+   *
+   * <p>{@link #prepareForShutdown()} of this strategy is called only after all the present strategies of given types have given a green
+   * light in {@link #canShutdown()}. Strategies not depending on each other are draining in parallel.
+   *
+   * <p>A strategy with dependencies does not get a clients reaction window of its own, its clients are its dependencies, which have
+   * drained already. So {@link #clientReactionTimePassed()} is called right after {@link #prepareForShutdown()}. When the dependencies
+   * do not drain before the deadline, both are called right before {@link #applicationTerminating()}.
+   */
+  default Collection<Class<?>> getShutdownDependencies() {
+    return Collections.emptyList();
+  }
+
+  /**
+   * Called, when decision has made to finally stop the application. Always after {@link #prepareForShutdown()}.
    */
   default void applicationTerminating() {
   }
 
   /**
-   * Called right after client reaction time has passed from the start of the shutdown.
+   * Called right after client reaction time has passed from the start of the shutdown, or, for strategies with
+   * {@link #getShutdownDependencies() dependencies}, right after being prepared for shutdown.
    */
   default void clientReactionTimePassed() {
   }
@@ -0,0 +1,71 @@
+package com.transferwise.common.gracefulshutdown;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The moment, by which the whole graceful shutdown has to be finished.
+ *
+ * <p>Based on {@link System#nanoTime()}, so it is not affected by wall clock changes. Queries are cheap and do not allocate, so those can
+ * be called as often as needed. Strategies should ask for the remaining time at the moment they need it, instead of remembering it, so
+ * time left unused by other strategies is available for them.
+ */
+public final class ShutdownDeadline {
+
+  private final long deadlineNanos;
+
+  private ShutdownDeadline(long deadlineNanos) {
+    this.deadlineNanos = deadlineNanos;
+  }
+
+  /**
+   * Creates a deadline given time from now.
+   */
+  public static ShutdownDeadline after(Duration duration) {
+    return new ShutdownDeadline(System.nanoTime() + duration.toNanos());
+  }
+
+  /**
+   * Creates a deadline given milliseconds from now.
+   */
+  public static ShutdownDeadline afterMillis(long millis) {
+    return new ShutdownDeadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis));
+  }
+
+  /**
+   * Returns the remaining time in nanoseconds, or 0 when the deadline has passed.
+   */
+  public long remainingNanos() {
+    return Math.max(0, deadlineNanos - System.nanoTime());
+  }
+
+  /**
+   * Returns the remaining time in milliseconds, or 0 when the deadline has passed.
+   */
+  public long remainingMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(remainingNanos());
+  }
+
+  /**
+   * Returns the remaining time, or {@link Duration#ZERO} when the deadline has passed.
+   */
+  public Duration remaining() {
+    return Duration.ofNanos(remainingNanos());
+  }
+
+  public boolean isExpired() {
+    return deadlineNanos - System.nanoTime() <= 0;
+  }
+
+  /**
+   * Returns the deadline in {@link System#nanoTime()} terms.
+   */
+  public long getDeadlineNanos() {
+    return deadlineNanos;
+  }
+
+  @Override
+  public String toString() {
+    return "ShutdownDeadline{remainingMs=" + remainingMillis() + "}";
+  }
+}